@@ -4,7 +4,7 @@ import { UsersApi } from '@c4-soft/user-proxies-api';
 import { BehaviorSubject } from 'rxjs/internal/BehaviorSubject';
 import { Observable } from 'rxjs/internal/Observable';
 import { of } from 'rxjs/internal/observable/of';
-import { mergeMap } from 'rxjs/operators';
+import { debounceTime, distinctUntilChanged, switchMap } from 'rxjs/operators';
 
 @Component({
   selector: 'app-username-autocomplete',
@@ -47,7 +47,9 @@ export class UsernameAutocompleteComponent implements OnInit {
   constructor(private usersApi: UsersApi) {
     this.usernameCtrl.valueChanges
       .pipe(
-        mergeMap((value) => {
+        debounceTime(250),
+        distinctUntilChanged(),
+        switchMap((value) => {
           if (this.usernameCtrl.valid && typeof value === 'string') {
             return this.usersApi.retrieveUsernamesLike(value as string);
           }
@@ -1,5 +1,58 @@
 package com.c4_soft.user_proxies.api.web.dto;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Grants are persisted by ordinal (and encoded as bits of an int mask): append new values, never reorder nor remove existing ones.
+ */
 public enum Grant {
-	GREET, PROFILE_READ, PROXIES_READ, PROXIES_EDIT
+	GREET, PROFILE_READ, PROXIES_READ, PROXIES_EDIT;
+
+	private static final Grant[] VALUES = values();
+	private static final Map<String, Grant> BY_NAME = Stream.of(VALUES).collect(Collectors.toUnmodifiableMap(Grant::name, Function.identity()));
+
+	/**
+	 * @return the bit for this grant in a grants mask
+	 */
+	public int mask() {
+		return 1 << ordinal();
+	}
+
+	public static int toMask(Collection<Grant> grants) {
+		var mask = 0;
+		for (final var grant : grants) {
+			mask |= grant.mask();
+		}
+		return mask;
+	}
+
+	/**
+	 * @param  names grant names, as in the "proxies" claim
+	 * @return       the mask of grants with the provided names (names unknown to this version are ignored)
+	 */
+	public static int parseMask(Collection<String> names) {
+		var mask = 0;
+		for (final var name : names) {
+			final var grant = BY_NAME.get(name);
+			if (grant != null) {
+				mask |= grant.mask();
+			}
+		}
+		return mask;
+	}
+
+	public static EnumSet<Grant> fromMask(int mask) {
+		final var grants = EnumSet.noneOf(Grant.class);
+		for (final var grant : VALUES) {
+			if ((mask & grant.mask()) != 0) {
+				grants.add(grant);
+			}
+		}
+		return grants;
+	}
 }
@@ -0,0 +1,69 @@
+package com.c4_soft.user_proxies.api.web.dto;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Formats of the "proxies" private claim. Consumers should accept all formats: use {@link #mask(Object)} or {@link #decode(Object)}
+ * whatever the format.
+ */
+public enum ProxiesClaimFormat {
+	/**
+	 * Grant names by proxied user preferredUsername, for instance {"ch4mpy": ["PROFILE_READ", "GREET"]}
+	 */
+	NAMES {
+		@Override
+		public Map<String, ?> encode(Map<String, ? extends Collection<String>> grantsByProxiedUsername) {
+			return grantsByProxiedUsername;
+		}
+	},
+	/**
+	 * {@link Grant} mask by proxied user preferredUsername, for instance {"ch4mpy": 3}
+	 */
+	MASKS {
+		@Override
+		public Map<String, ?> encode(Map<String, ? extends Collection<String>> grantsByProxiedUsername) {
+			final var masks = new LinkedHashMap<String, Integer>(grantsByProxiedUsername.size() * 4 / 3 + 1);
+			grantsByProxiedUsername.forEach((username, grants) -> masks.put(username, Grant.parseMask(grants)));
+			return masks;
+		}
+	};
+
+	/**
+	 * @param  grantsByProxiedUsername grant names by proxied user preferredUsername
+	 * @return                         the "proxies" claim value in this format
+	 */
+	public abstract Map<String, ?> encode(Map<String, ? extends Collection<String>> grantsByProxiedUsername);
+
+	/**
+	 * @param  value a value of the "proxies" claim, in any format (null if the claim has no entry for a proxied user)
+	 * @return       the {@link Grant} mask
+	 */
+	public static int mask(Object value) {
+		if (value instanceof Number mask) {
+			return mask.intValue();
+		}
+		if (value instanceof Collection<?> names) {
+			@SuppressWarnings("unchecked")
+			final var grantNames = (Collection<String>) names;
+			return Grant.parseMask(grantNames);
+		}
+		return 0;
+	}
+
+	/**
+	 * @param  claim the "proxies" claim, in any format
+	 * @return       {@link Grant} mask by proxied user preferredUsername
+	 */
+	public static Map<String, Integer> decode(Object claim) {
+		if (!(claim instanceof Map<?, ?> proxies) || proxies.isEmpty()) {
+			return Map.of();
+		}
+		final var masks = new HashMap<String, Integer>(proxies.size() * 4 / 3 + 1);
+		proxies.forEach((username, value) -> masks.put(username.toString(), mask(value)));
+		return Collections.unmodifiableMap(masks);
+	}
+}
@@ -0,0 +1,39 @@
+package com.c4_soft.user_proxies.api.web.dto;
+
+import java.io.Serializable;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@XmlRootElement
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProxyChangeDto implements Serializable {
+	private static final long serialVersionUID = -4430569152063829027L;
+
+	/**
+	 * Position of the change in the feed: changes are numbered without gaps, in commit order
+	 */
+	@NotNull
+	private Long offset;
+
+	@NotNull
+	private ProxyChangeType type;
+
+	@NotNull
+	private Long proxyId;
+
+	@NotNull
+	private String grantingUsername;
+
+	@NotNull
+	private String grantedUsername;
+
+	@NotNull
+	private Long at;
+}
@@ -0,0 +1,12 @@
+package com.c4_soft.user_proxies.api.web.dto;
+
+/**
+ * Persisted by name: values can be appended or reordered but not renamed.
+ */
+public enum ProxyChangeType {
+	CREATED,
+	/**
+	 * Proxy edited or truncated by overlaps resolution
+	 */
+	UPDATED, DELETED
+}
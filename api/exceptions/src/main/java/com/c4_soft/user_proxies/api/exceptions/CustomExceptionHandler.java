@@ -4,6 +4,7 @@ import java.util.stream.Collectors;
 
 import jakarta.validation.ConstraintViolationException;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
@@ -53,6 +54,12 @@ public class CustomExceptionHandler extends ResponseEntityExceptionHandler {
 		logger.info(ex.getMessage());
 	}
 
+	@ResponseStatus(HttpStatus.CONFLICT)
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	protected void handleOptimisticLockingFailure(OptimisticLockingFailureException ex, WebRequest request) {
+		logger.info(ex.getMessage());
+	}
+
 	@ResponseStatus(HttpStatus.BAD_REQUEST)
 	@ExceptionHandler(ConstraintViolationException.class)
 	protected void handleConstraintViolation(ConstraintViolationException ex, WebRequest request) {
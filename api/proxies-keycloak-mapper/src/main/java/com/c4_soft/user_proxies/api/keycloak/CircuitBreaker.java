@@ -0,0 +1,47 @@
+package com.c4_soft.user_proxies.api.keycloak;
+
+/**
+ * Minimal circuit-breaker: opens after a number of consecutive failures, rejects calls while open, and then lets a single trial call
+ * through (half-open state). The circuit closes again as soon as a call succeeds. A failure threshold lower than 1 disables it.
+ */
+class CircuitBreaker {
+
+	private final int failureThreshold;
+	private final long openDurationMillis;
+	private int consecutiveFailures = 0;
+	private long openUntil = 0L;
+	private boolean isTrialInFlight = false;
+
+	CircuitBreaker(int failureThreshold, long openDurationMillis) {
+		this.failureThreshold = failureThreshold;
+		this.openDurationMillis = openDurationMillis;
+	}
+
+	/**
+	 * @param  now current epoch milliseconds
+	 * @return     true if the call should be attempted, false if it should fail fast
+	 */
+	synchronized boolean tryAcquire(long now) {
+		if (failureThreshold < 1 || consecutiveFailures < failureThreshold) {
+			return true;
+		}
+		if (now < openUntil || isTrialInFlight) {
+			return false;
+		}
+		isTrialInFlight = true;
+		return true;
+	}
+
+	synchronized void onSuccess() {
+		consecutiveFailures = 0;
+		isTrialInFlight = false;
+	}
+
+	synchronized void onFailure(long now) {
+		consecutiveFailures++;
+		isTrialInFlight = false;
+		if (failureThreshold > 0 && consecutiveFailures >= failureThreshold) {
+			openUntil = now + openDurationMillis;
+		}
+	}
+}
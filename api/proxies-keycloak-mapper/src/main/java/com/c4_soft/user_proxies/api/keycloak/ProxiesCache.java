@@ -0,0 +1,78 @@
+package com.c4_soft.user_proxies.api.keycloak;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Size bounded, least-recently-used cache for the "proxies" claim of tenants, keyed by tenant preferred_username. Entries are fresh
+ * during a configurable TTL or until the first proxy start / end date, whichever comes first. Expired entries are retained (within size
+ * limit) so that the last known good value can be served when user-proxies-api is unavailable.
+ */
+class ProxiesCache {
+
+	private final long ttlMillis;
+	private final int maxEntries;
+	private final Map<String, Entry> entries;
+
+	ProxiesCache(long ttlMillis, int maxEntries) {
+		this.ttlMillis = ttlMillis;
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<>(16, .75f, true) {
+			private static final long serialVersionUID = -2861542349138052455L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > ProxiesCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @param  tenantPreferredUsername cache key
+	 * @param  now                     current epoch milliseconds
+	 * @return                         the cached claim if it is still fresh
+	 */
+	synchronized Optional<Map<String, List<String>>> get(String tenantPreferredUsername, long now) {
+		final var entry = entries.get(tenantPreferredUsername);
+		if (entry == null || entry.expiresAt() <= now) {
+			return Optional.empty();
+		}
+		return Optional.of(entry.permissions());
+	}
+
+	/**
+	 * @param  tenantPreferredUsername cache key
+	 * @param  now                     current epoch milliseconds
+	 * @param  maxStalenessMillis      maximum age of the returned value
+	 * @return                         the last known claim, even if expired, provided it was fetched less than maxStalenessMillis ago
+	 */
+	synchronized Optional<Map<String, List<String>>> getStale(String tenantPreferredUsername, long now, long maxStalenessMillis) {
+		final var entry = entries.get(tenantPreferredUsername);
+		if (entry == null || entry.fetchedAt() + maxStalenessMillis <= now) {
+			return Optional.empty();
+		}
+		return Optional.of(entry.permissions());
+	}
+
+	/**
+	 * @param tenantPreferredUsername cache key
+	 * @param permissions             proxies claim value
+	 * @param now                     time at which permissions were fetched
+	 * @param validUntil              next proxy start or end date (the claim must be refreshed at that time whatever the TTL)
+	 */
+	synchronized void put(String tenantPreferredUsername, Map<String, List<String>> permissions, long now, long validUntil) {
+		if (maxEntries < 1) {
+			return;
+		}
+		entries.put(tenantPreferredUsername, new Entry(permissions, now, Math.min(now + ttlMillis, validUntil)));
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	private static record Entry(Map<String, List<String>> permissions, long fetchedAt, long expiresAt) {
+	}
+}
@@ -3,6 +3,7 @@ package com.c4_soft.user_proxies.api.keycloak;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import org.keycloak.models.ClientSessionContext;
 import org.keycloak.models.KeycloakSession;
@@ -16,6 +17,8 @@ import org.keycloak.provider.ProviderConfigProperty;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.representations.IDToken;
 
+import com.c4_soft.user_proxies.api.web.dto.ProxiesClaimFormat;
+
 public class ProxiesMapper extends AbstractOIDCProtocolMapper
 		implements OIDCAccessTokenMapper, OIDCIDTokenMapper, UserInfoTokenMapper {
 	private static final String AUTHORIZATION_URI = "proxies-service.authorization-uri";
@@ -23,6 +26,28 @@ public class ProxiesMapper extends AbstractOIDCProtocolMapper
 	private static final String PROXIES_SERVICE_CLIENT_NAME = "proxies-service.client-name";
 	private static final String PROVIDER_ID = "c4-soft.com";
 	private static final String PROXIES_SERVICE_BASE_URI = "proxies-service.users-endpoint-uri";
+	private static final String CLIENT_TOKEN_REFRESH_SKEW = "proxies-service.token-refresh-skew-seconds";
+	private static final long DEFAULT_CLIENT_TOKEN_REFRESH_SKEW = 30L;
+	private static final String HTTP_MAX_CONNECTIONS = "proxies-service.http.max-connections";
+	private static final int DEFAULT_HTTP_MAX_CONNECTIONS = 50;
+	private static final String HTTP_MAX_IDLE_TIME = "proxies-service.http.max-idle-time-seconds";
+	private static final long DEFAULT_HTTP_MAX_IDLE_TIME = 30L;
+	private static final String HTTP_CONNECT_TIMEOUT = "proxies-service.http.connect-timeout-millis";
+	private static final int DEFAULT_HTTP_CONNECT_TIMEOUT = 2000;
+	private static final String HTTP_RESPONSE_TIMEOUT = "proxies-service.http.response-timeout-millis";
+	private static final long DEFAULT_HTTP_RESPONSE_TIMEOUT = 3000L;
+	private static final String HTTP2_ENABLED = "proxies-service.http.http2-enabled";
+	private static final String PROXIES_CACHE_TTL = "proxies-cache.ttl-seconds";
+	private static final String PROXIES_CACHE_MAX_ENTRIES = "proxies-cache.max-entries";
+	private static final long DEFAULT_PROXIES_CACHE_TTL = 30L;
+	private static final int DEFAULT_PROXIES_CACHE_MAX_ENTRIES = 10000;
+	private static final String PROXIES_MAX_STALENESS = "proxies-cache.max-staleness-seconds";
+	private static final long DEFAULT_PROXIES_MAX_STALENESS = 300L;
+	private static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD = "proxies-service.circuit-breaker.failure-threshold";
+	private static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+	private static final String CIRCUIT_BREAKER_OPEN_DURATION = "proxies-service.circuit-breaker.open-seconds";
+	private static final long DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = 30L;
+	private static final String PROXIES_CLAIM_FORMAT = "proxies-claim.format";
 
 	private final List<ProviderConfigProperty> configProperties = new ArrayList<>();
 
@@ -59,6 +84,106 @@ public class ProxiesMapper extends AbstractOIDCProtocolMapper
 		property.setType(ProviderConfigProperty.STRING_TYPE);
 		property.setDefaultValue("https://localhost:8443/realms/master/protocol/openid-connect/token");
 		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(CLIENT_TOKEN_REFRESH_SKEW);
+		property.setLabel("Token refresh skew (seconds)");
+		property.setHelpText("How long before expiry the proxies mapper access token is renewed");
+		property.setType(ProviderConfigProperty.STRING_TYPE);
+		property.setDefaultValue(Long.toString(DEFAULT_CLIENT_TOKEN_REFRESH_SKEW));
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(HTTP_MAX_CONNECTIONS);
+		property.setLabel("Max HTTP connections");
+		property.setHelpText("Size of the connection pool shared by requests to the authorization and proxies end-points");
+		property.setType(ProviderConfigProperty.STRING_TYPE);
+		property.setDefaultValue(Integer.toString(DEFAULT_HTTP_MAX_CONNECTIONS));
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(HTTP_MAX_IDLE_TIME);
+		property.setLabel("HTTP keep-alive (seconds)");
+		property.setHelpText("How long idle pooled connections are kept open");
+		property.setType(ProviderConfigProperty.STRING_TYPE);
+		property.setDefaultValue(Long.toString(DEFAULT_HTTP_MAX_IDLE_TIME));
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(HTTP_CONNECT_TIMEOUT);
+		property.setLabel("HTTP connect timeout (ms)");
+		property.setHelpText("Maximum time to establish a connection to the authorization or proxies end-points");
+		property.setType(ProviderConfigProperty.STRING_TYPE);
+		property.setDefaultValue(Integer.toString(DEFAULT_HTTP_CONNECT_TIMEOUT));
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(HTTP_RESPONSE_TIMEOUT);
+		property.setLabel("HTTP response timeout (ms)");
+		property.setHelpText("Maximum time to wait for a pooled connection or for a response. Token issuance continues without proxies past this delay.");
+		property.setType(ProviderConfigProperty.STRING_TYPE);
+		property.setDefaultValue(Long.toString(DEFAULT_HTTP_RESPONSE_TIMEOUT));
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(HTTP2_ENABLED);
+		property.setLabel("HTTP/2");
+		property.setHelpText("Negotiate HTTP/2 with the authorization and proxies end-points (falls back to HTTP/1.1)");
+		property.setType(ProviderConfigProperty.BOOLEAN_TYPE);
+		property.setDefaultValue("false");
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(PROXIES_CACHE_TTL);
+		property.setLabel("Proxies cache TTL (seconds)");
+		property.setHelpText(
+				"How long proxies fetched for a user are reused for subsequent tokens (cached entries never outlive the first proxy start or end date). 0 disables the cache.");
+		property.setType(ProviderConfigProperty.STRING_TYPE);
+		property.setDefaultValue(Long.toString(DEFAULT_PROXIES_CACHE_TTL));
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(PROXIES_CACHE_MAX_ENTRIES);
+		property.setLabel("Proxies cache max entries");
+		property.setHelpText("Maximum number of users for which proxies are cached (least recently used are evicted first)");
+		property.setType(ProviderConfigProperty.STRING_TYPE);
+		property.setDefaultValue(Integer.toString(DEFAULT_PROXIES_CACHE_MAX_ENTRIES));
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(PROXIES_MAX_STALENESS);
+		property.setLabel("Proxies max staleness (seconds)");
+		property.setHelpText(
+				"When proxies service is unavailable, last known proxies of a user are put in tokens if fetched less than this ago (proxies ending meanwhile may be included). 0 issues tokens with empty proxies instead.");
+		property.setType(ProviderConfigProperty.STRING_TYPE);
+		property.setDefaultValue(Long.toString(DEFAULT_PROXIES_MAX_STALENESS));
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+		property.setLabel("Circuit-breaker failure threshold");
+		property.setHelpText("Number of consecutive failures after which proxies service calls are suspended. 0 disables the circuit-breaker.");
+		property.setType(ProviderConfigProperty.STRING_TYPE);
+		property.setDefaultValue(Integer.toString(DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD));
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(CIRCUIT_BREAKER_OPEN_DURATION);
+		property.setLabel("Circuit-breaker open duration (seconds)");
+		property.setHelpText("How long proxies service calls are suspended before a single trial call is attempted");
+		property.setType(ProviderConfigProperty.STRING_TYPE);
+		property.setDefaultValue(Long.toString(DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION));
+		configProperties.add(property);
+
+		property = new ProviderConfigProperty();
+		property.setName(PROXIES_CLAIM_FORMAT);
+		property.setLabel("Proxies claim format");
+		property.setHelpText(
+				"NAMES: grant names by proxied user (for instance {\"ch4mpy\": [\"PROFILE_READ\", \"GREET\"]}). MASKS: grants bit-mask by proxied user (for instance {\"ch4mpy\": 3}), shorter tokens but requires resource servers decoding it (user-proxies security lib does).");
+		property.setType(ProviderConfigProperty.LIST_TYPE);
+		property.setOptions(Stream.of(ProxiesClaimFormat.values()).map(ProxiesClaimFormat::name).toList());
+		property.setDefaultValue(ProxiesClaimFormat.NAMES.name());
+		configProperties.add(property);
 	}
 
 	@Override
@@ -110,15 +235,40 @@ public class ProxiesMapper extends AbstractOIDCProtocolMapper
 				.authorizationUri(mappingModel.getConfig().get(AUTHORIZATION_URI))
 				.username(mappingModel.getConfig().get(PROXIES_SERVICE_CLIENT_NAME))
 				.password(mappingModel.getConfig().get(PROXIES_SERVICE_CLIENT_SECRET))
-				.userProxiesBaseUri(mappingModel.getConfig().get(PROXIES_SERVICE_BASE_URI)).build();
+				.userProxiesBaseUri(mappingModel.getConfig().get(PROXIES_SERVICE_BASE_URI))
+				.clientTokenRefreshSkewSeconds(getLong(mappingModel, CLIENT_TOKEN_REFRESH_SKEW, DEFAULT_CLIENT_TOKEN_REFRESH_SKEW))
+				.maxConnections((int) getLong(mappingModel, HTTP_MAX_CONNECTIONS, DEFAULT_HTTP_MAX_CONNECTIONS))
+				.maxIdleTimeSeconds(getLong(mappingModel, HTTP_MAX_IDLE_TIME, DEFAULT_HTTP_MAX_IDLE_TIME))
+				.connectTimeoutMillis((int) getLong(mappingModel, HTTP_CONNECT_TIMEOUT, DEFAULT_HTTP_CONNECT_TIMEOUT))
+				.responseTimeoutMillis(getLong(mappingModel, HTTP_RESPONSE_TIMEOUT, DEFAULT_HTTP_RESPONSE_TIMEOUT))
+				.http2Enabled(Boolean.parseBoolean(mappingModel.getConfig().get(HTTP2_ENABLED)))
+				.proxiesCacheTtlSeconds(getLong(mappingModel, PROXIES_CACHE_TTL, DEFAULT_PROXIES_CACHE_TTL))
+				.proxiesCacheMaxEntries((int) getLong(mappingModel, PROXIES_CACHE_MAX_ENTRIES, DEFAULT_PROXIES_CACHE_MAX_ENTRIES))
+				.proxiesMaxStalenessSeconds(getLong(mappingModel, PROXIES_MAX_STALENESS, DEFAULT_PROXIES_MAX_STALENESS))
+				.circuitBreakerFailureThreshold((int) getLong(mappingModel, CIRCUIT_BREAKER_FAILURE_THRESHOLD, DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD))
+				.circuitBreakerOpenSeconds(getLong(mappingModel, CIRCUIT_BREAKER_OPEN_DURATION, DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION)).build();
 		final var who = Optional.ofNullable(userSession.getUser().getUsername()).orElse("");
 		if (who == null || who.length() == 0) {
 		} else {
-			final var proxies = UserProxiesClient.getInstance(clientConfig).getPermissionsByProxiedUsernameFor(who);
-			token.getOtherClaims().put("proxies", proxies);
+			final var proxies = UserProxiesClient.getInstance(mappingModel.getId(), clientConfig).getPermissionsByProxiedUsernameFor(who);
+			token.getOtherClaims().put("proxies", getClaimFormat(mappingModel).encode(proxies));
 			setClaim(token, mappingModel, userSession, keycloakSession, clientSessionCtx);
 		}
 		return token;
 
 	}
+
+	private static ProxiesClaimFormat getClaimFormat(ProtocolMapperModel mappingModel) {
+		final var format = mappingModel.getConfig().get(PROXIES_CLAIM_FORMAT);
+		return Stream.of(ProxiesClaimFormat.values()).filter(f -> f.name().equals(format)).findAny().orElse(ProxiesClaimFormat.NAMES);
+	}
+
+	private static long getLong(ProtocolMapperModel mappingModel, String key, long defaultValue) {
+		try {
+			return Optional.ofNullable(mappingModel.getConfig().get(key)).map(String::trim).filter(s -> !s.isEmpty()).map(Long::valueOf)
+					.orElse(defaultValue);
+		} catch (final NumberFormatException e) {
+			return defaultValue;
+		}
+	}
 }
\ No newline at end of file
@@ -1,54 +1,126 @@
 package com.c4_soft.user_proxies.api.keycloak;
 
+import java.time.Duration;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 
-import com.c4_soft.user_proxies.api.web.dto.Grant;
-import com.c4_soft.user_proxies.api.web.dto.ProxyDto;
-
+import io.netty.channel.ChannelOption;
 import lombok.extern.slf4j.Slf4j;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 @Slf4j
-public class UserProxiesClient {
+public class UserProxiesClient implements AutoCloseable {
 
-	private static final Map<UserProxiesClientConfig, UserProxiesClient> instances = new HashMap<>();
+	private static final UserProxiesClientRegistry registry = new UserProxiesClientRegistry(UserProxiesClient::new);
+	private static final long MIN_CLIENT_TOKEN_BACKOFF_MILLIS = 1000L;
+	private static final long MAX_CLIENT_TOKEN_BACKOFF_MILLIS = 60000L;
+	private static final ParameterizedTypeReference<Map<String, List<String>>> PROXIES_CLAIM_TYPE = new ParameterizedTypeReference<>() {
+	};
+	private static final Pattern MAX_AGE_PATTERN = Pattern.compile("max-age=(\\d+)");
 
 	private final UserProxiesClientConfig config;
+	private final ConnectionProvider connectionProvider;
+	private final Duration callTimeout;
 	private final WebClient tokenWebClient;
 	private final WebClient userProxiesWebClient;
-	private long expiresAt = 0L;
-	private Optional<TokenResponseDto> token = Optional.empty();
+	private final ProxiesCache proxiesCache;
+	private final CircuitBreaker circuitBreaker;
+	private final ReentrantLock clientTokenLock = new ReentrantLock();
+	private volatile ClientToken clientToken = new ClientToken(Optional.empty(), 0L, 0L);
+	private int clientTokenFailures = 0;
+	private long nextClientTokenAttemptAt = 0L;
 
 	private UserProxiesClient(UserProxiesClientConfig config) {
 		this.config = config;
-		this.tokenWebClient = WebClient.builder().baseUrl(config.getAuthorizationUri()).build();
-		this.userProxiesWebClient = WebClient.builder().baseUrl(config.getUserProxiesBaseUri()).build();
+		this.connectionProvider = ConnectionProvider.builder("user-proxies-client").maxConnections(config.getMaxConnections())
+				.maxIdleTime(Duration.ofSeconds(config.getMaxIdleTimeSeconds()))
+				// Keycloak worker threads waiting for a pooled connection must not wait longer than for a response
+				.pendingAcquireTimeout(Duration.ofMillis(config.getResponseTimeoutMillis())).disposeTimeout(Duration.ofSeconds(10)).build();
+		this.callTimeout = Duration.ofMillis(config.getConnectTimeoutMillis() + config.getResponseTimeoutMillis());
+		this.tokenWebClient = WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient(config.getAuthorizationUri())))
+				.baseUrl(config.getAuthorizationUri()).build();
+		this.userProxiesWebClient = WebClient.builder()
+				.clientConnector(new ReactorClientHttpConnector(httpClient(config.getUserProxiesBaseUri()))).baseUrl(config.getUserProxiesBaseUri())
+				.build();
+		this.proxiesCache = new ProxiesCache(1000L * config.getProxiesCacheTtlSeconds(), config.getProxiesCacheMaxEntries());
+		this.circuitBreaker = new CircuitBreaker(config.getCircuitBreakerFailureThreshold(), 1000L * config.getCircuitBreakerOpenSeconds());
 	}
 
+	private HttpClient httpClient(String baseUri) {
+		final var httpClient = HttpClient.create(connectionProvider).option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutMillis())
+				.responseTimeout(Duration.ofMillis(config.getResponseTimeoutMillis())).keepAlive(true);
+		if (!config.isHttp2Enabled()) {
+			return httpClient;
+		}
+		final var isSecure = baseUri != null && baseUri.toLowerCase().startsWith("https:");
+		return httpClient.protocol(isSecure ? HttpProtocol.H2 : HttpProtocol.H2C, HttpProtocol.HTTP11);
+	}
+
+	/**
+	 * Proxies are served from cache while fresh. Otherwise, they are fetched from user-proxies-api, unless the circuit-breaker is open. In
+	 * case of failure (or open circuit), the last known proxies for the tenant are used, provided these are not older than
+	 * {@link UserProxiesClientConfig#getProxiesMaxStalenessSeconds()}.
+	 *
+	 * @param  tenantPreferredUsername preferred_username of the user tokens are issued for
+	 * @return                         the value for the "proxies" private claim
+	 */
 	public Map<String, List<String>> getPermissionsByProxiedUsernameFor(String tenantPreferredUsername) {
+		final var now = new Date().getTime();
+		final var cached = proxiesCache.get(tenantPreferredUsername, now);
+		if (cached.isPresent()) {
+			log.debug("Got proxies for {} from cache", tenantPreferredUsername);
+			return cached.get();
+		}
+		if (!circuitBreaker.tryAcquire(now)) {
+			log.debug("Proxies service circuit is open, using last known proxies for {}", tenantPreferredUsername);
+			return getLastKnownPermissions(tenantPreferredUsername, now);
+		}
+
+		final ResponseEntity<Map<String, List<String>>> response;
 		try {
-			final Optional<ProxyDto[]> dtos = Optional
-					.ofNullable(userProxiesWebClient.get().uri("/{username}/proxies/granted", tenantPreferredUsername)
-							.headers(this::setBearer).retrieve().bodyToMono(ProxyDto[].class).block());
-			dtos.ifPresent(d -> log.debug("Got proxies {}", Stream.of(d).toList()));
-			
-			return dtos.map(Stream::of)
-					.map(s -> s.collect(Collectors.toMap(ProxyDto::getGrantingUsername, dto -> dto.getGrants().stream().map(Grant::toString).toList())))
-					.orElse(Map.of());
+			response = userProxiesWebClient.get().uri("/{username}/proxies/granted/claim", tenantPreferredUsername).headers(this::setBearer)
+					.retrieve().toEntity(PROXIES_CLAIM_TYPE).block(callTimeout);
+			circuitBreaker.onSuccess();
 		} catch (final Exception e) {
+			circuitBreaker.onFailure(new Date().getTime());
 			log.error("Failed to fetch user proxies: {}", e);
-			return Map.of();
+			return getLastKnownPermissions(tenantPreferredUsername, now);
 		}
+
+		final var permissions = Optional.ofNullable(response).map(ResponseEntity::getBody).orElse(Map.of());
+		log.debug("Got proxies {}", permissions);
+		proxiesCache.put(tenantPreferredUsername, permissions, now, Optional.ofNullable(response).flatMap(r -> maxAge(r.getHeaders()))
+				.map(maxAge -> now + 1000L * maxAge).orElse(Long.MAX_VALUE));
+
+		return permissions;
+	}
+
+	private Map<String, List<String>> getLastKnownPermissions(String tenantPreferredUsername, long now) {
+		return proxiesCache.getStale(tenantPreferredUsername, now, 1000L * config.getProxiesMaxStalenessSeconds()).orElse(Map.of());
+	}
+
+	/**
+	 * @param  headers proxies claim response headers
+	 * @return         Cache-Control max-age, if any. user-proxies-api sets it to the next proxy start or end, which the claim must not
+	 *                 outlive.
+	 */
+	static Optional<Long> maxAge(HttpHeaders headers) {
+		return Optional.ofNullable(headers.getCacheControl()).map(MAX_AGE_PATTERN::matcher).filter(Matcher::find).map(m -> Long.valueOf(m.group(1)));
 	}
 
 	private HttpHeaders setBearer(HttpHeaders headers) {
@@ -58,30 +130,101 @@ public class UserProxiesClient {
 		return headers;
 	}
 
+	/**
+	 * Renewal is single-flight: while the current token is still valid, one thread renews it and others keep using the current one.
+	 * Threads needing a token when the current one is expired wait for the in-flight renewal. Renewal starts
+	 * {@link UserProxiesClientConfig#getClientTokenRefreshSkewSeconds()} before expiry and failures are retried with an exponential
+	 * back-off.
+	 *
+	 * @return a client access token for user-proxies-api, if any could be fetched
+	 */
 	private Optional<String> getClientAccessToken() {
+		final var current = clientToken;
 		final var now = new Date().getTime();
-		if (expiresAt < now) {
-			try {
-				log.info("Get client access token with {}", config.getUsername());
-				token = Optional.ofNullable(tokenWebClient.post().headers(headers -> {
-					headers.setBasicAuth(config.getUsername(), config.getPassword());
-					headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-				}).body(BodyInserters.fromFormData("scope", "openid profile").with("grant_type", "client_credentials"))
-						.retrieve().bodyToMono(TokenResponseDto.class).block());
-				expiresAt = now + 1000L * token.map(TokenResponseDto::getExpiresIn).orElse(0L);
-			} catch (final Exception e) {
-				log.error("Failed to get client authorization-token: {}", e);
-				return Optional.empty();
+		if (now < current.refreshAt()) {
+			return current.accessToken();
+		}
+		if (now < current.expiresAt()) {
+			if (!clientTokenLock.tryLock()) {
+				// another thread is already renewing the token which is still valid
+				return current.accessToken();
 			}
+		} else {
+			clientTokenLock.lock();
+		}
+		try {
+			final var latest = clientToken;
+			final var lockedAt = new Date().getTime();
+			if (lockedAt < latest.refreshAt()) {
+				// renewed while we were waiting for the lock
+				return latest.accessToken();
+			}
+			if (lockedAt < nextClientTokenAttemptAt) {
+				// backing off after a failure
+				return lockedAt < latest.expiresAt() ? latest.accessToken() : Optional.empty();
+			}
+			final var renewed = fetchClientToken(lockedAt);
+			if (renewed != latest) {
+				return renewed.accessToken();
+			}
+			return lockedAt < latest.expiresAt() ? latest.accessToken() : Optional.empty();
+		} finally {
+			clientTokenLock.unlock();
 		}
-		log.debug("Access token: {}", token.orElse(null));
-		return token.map(TokenResponseDto::getAccessToken);
 	}
 
-	public static UserProxiesClient getInstance(UserProxiesClientConfig config) {
-		return instances.computeIfAbsent(config, c -> {
-			log.info("Building UserProxiesClient with {}", c);
-			return new UserProxiesClient(c);
-		});
+	private ClientToken fetchClientToken(long now) {
+		try {
+			log.info("Get client access token with {}", config.getUsername());
+			final var response = Optional.ofNullable(tokenWebClient.post().headers(headers -> {
+				headers.setBasicAuth(config.getUsername(), config.getPassword());
+				headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+			}).body(BodyInserters.fromFormData("scope", "openid profile").with("grant_type", "client_credentials")).retrieve()
+					.bodyToMono(TokenResponseDto.class).block(callTimeout));
+			final var accessToken = response.map(TokenResponseDto::getAccessToken).filter(token -> !token.isBlank());
+			final var lifespan = 1000L * response.map(TokenResponseDto::getExpiresIn).orElse(0L);
+			if (accessToken.isEmpty() || lifespan <= 0L) {
+				// an already expired token would be requested again on each call: back off like for any other failure
+				throw new IllegalStateException("token response has no access token or no positive expires_in");
+			}
+			// never refresh earlier than half-life, to avoid renewing short-lived tokens on each call
+			final var skew = Math.min(1000L * config.getClientTokenRefreshSkewSeconds(), lifespan / 2);
+			clientToken = new ClientToken(accessToken, now + lifespan - skew, now + lifespan);
+			clientTokenFailures = 0;
+			nextClientTokenAttemptAt = 0L;
+		} catch (final Exception e) {
+			final var backoff = Math.min(MAX_CLIENT_TOKEN_BACKOFF_MILLIS, MIN_CLIENT_TOKEN_BACKOFF_MILLIS << Math.min(clientTokenFailures, 16));
+			clientTokenFailures++;
+			nextClientTokenAttemptAt = now + backoff;
+			log.error("Failed to get client authorization-token (next attempt in {}ms): {}", backoff, e);
+		}
+		return clientToken;
+	}
+
+	/**
+	 * Releases the connection pool (in-flight requests are granted a grace period)
+	 */
+	@Override
+	public void close() {
+		connectionProvider.disposeLater().subscribe(null, e -> log.warn("Failed to dispose UserProxiesClient connection pool: {}", e));
+	}
+
+	/**
+	 * @param  mapperId ID of the protocol mapper model the config was built from (used to close the client of its previous configuration)
+	 * @param  config   client configuration
+	 * @return          a client shared by all mappers with the same configuration
+	 */
+	public static UserProxiesClient getInstance(String mapperId, UserProxiesClientConfig config) {
+		return registry.get(mapperId, config, new Date().getTime());
+	}
+
+	/**
+	 * @return the number of clients currently held (each one owns a connection pool)
+	 */
+	public static int getLiveInstanceCount() {
+		return registry.size();
+	}
+
+	private static record ClientToken(Optional<String> accessToken, long refreshAt, long expiresAt) {
 	}
 }
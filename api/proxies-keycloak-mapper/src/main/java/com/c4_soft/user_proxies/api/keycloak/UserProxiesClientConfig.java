@@ -16,4 +16,15 @@ public class UserProxiesClientConfig implements Serializable {
 	private final String username;
 	private final String password;
 	private final String userProxiesBaseUri;
+	private final long clientTokenRefreshSkewSeconds;
+	private final int maxConnections;
+	private final long maxIdleTimeSeconds;
+	private final int connectTimeoutMillis;
+	private final long responseTimeoutMillis;
+	private final boolean http2Enabled;
+	private final long proxiesCacheTtlSeconds;
+	private final int proxiesCacheMaxEntries;
+	private final long proxiesMaxStalenessSeconds;
+	private final int circuitBreakerFailureThreshold;
+	private final long circuitBreakerOpenSeconds;
 }
\ No newline at end of file
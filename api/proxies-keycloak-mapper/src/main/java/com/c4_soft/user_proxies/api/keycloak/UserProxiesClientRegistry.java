@@ -0,0 +1,110 @@
+package com.c4_soft.user_proxies.api.keycloak;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds one {@link UserProxiesClient} per distinct {@link UserProxiesClientConfig}.
+ * <ul>
+ * <li>clients are built only once, even when many Keycloak worker threads ask for the same config at the same time</li>
+ * <li>when a mapper configuration is modified (secret rotation for instance), the client for the previous configuration is closed as soon
+ * as no other mapper uses it</li>
+ * <li>clients which were not used for {@link #IDLE_TIMEOUT_MILLIS} are closed</li>
+ * </ul>
+ * Accesses and evictions of a config are serialized by the registrations map: an idle client is not closed once it was returned to a
+ * caller, and the idleness is checked again when the registration is removed.
+ */
+@Slf4j
+class UserProxiesClientRegistry {
+	static final long IDLE_TIMEOUT_MILLIS = 15L * 60L * 1000L;
+	private static final long SWEEP_INTERVAL_MILLIS = 60L * 1000L;
+
+	private final Function<UserProxiesClientConfig, UserProxiesClient> clientFactory;
+	private final Map<UserProxiesClientConfig, Registration> registrations = new ConcurrentHashMap<>();
+	private final Map<String, UserProxiesClientConfig> configsByMapperId = new ConcurrentHashMap<>();
+	private final AtomicLong nextSweepAt = new AtomicLong(0L);
+
+	UserProxiesClientRegistry(Function<UserProxiesClientConfig, UserProxiesClient> clientFactory) {
+		this.clientFactory = clientFactory;
+	}
+
+	/**
+	 * @param  mapperId ID of the protocol mapper model the config was built from
+	 * @param  config   client configuration
+	 * @param  now      current epoch milliseconds
+	 * @return          the client for the provided configuration
+	 */
+	UserProxiesClient get(String mapperId, UserProxiesClientConfig config, long now) {
+		// mapper config is registered before the client is accessed, so that it is visible to a concurrent eviction of a superseded config
+		final var previous = mapperId == null ? null : configsByMapperId.put(mapperId, config);
+		final var registration = registrations.compute(config, (c, current) -> {
+			if (current != null) {
+				current.lastAccess().set(now);
+				return current;
+			}
+			final var client = clientFactory.apply(c);
+			log.info("Built UserProxiesClient for {} ({} live instance(s))", c.getUsername(), registrations.size() + 1);
+			return new Registration(client, new AtomicLong(now));
+		});
+
+		if (previous != null && !previous.equals(config)) {
+			evictIf(previous, r -> !configsByMapperId.containsValue(previous), "superseded");
+		}
+
+		sweep(now);
+
+		return registration.client();
+	}
+
+	int size() {
+		return registrations.size();
+	}
+
+	private void sweep(long now) {
+		final var sweepAt = nextSweepAt.get();
+		if (now < sweepAt || !nextSweepAt.compareAndSet(sweepAt, now + SWEEP_INTERVAL_MILLIS)) {
+			return;
+		}
+		registrations.forEach((config, registration) -> {
+			if (isIdle(registration, now) && evictIf(config, r -> isIdle(r, now), "idle")) {
+				configsByMapperId.values().removeIf(config::equals);
+			}
+		});
+	}
+
+	/**
+	 * Removes the registration of the provided config if the condition, evaluated atomically with accesses to this config, is met. The
+	 * client is closed once removed.
+	 *
+	 * @return true if the registration was evicted
+	 */
+	private boolean evictIf(UserProxiesClientConfig config, Predicate<Registration> condition, String reason) {
+		final var evicted = new AtomicReference<Registration>();
+		registrations.computeIfPresent(config, (c, registration) -> {
+			if (!condition.test(registration)) {
+				return registration;
+			}
+			evicted.set(registration);
+			return null;
+		});
+		if (evicted.get() == null) {
+			return false;
+		}
+		evicted.get().client().close();
+		log.info("Closed {} UserProxiesClient for {} ({} live instance(s))", reason, config.getUsername(), registrations.size());
+		return true;
+	}
+
+	private static boolean isIdle(Registration registration, long now) {
+		return registration.lastAccess().get() < now - IDLE_TIMEOUT_MILLIS;
+	}
+
+	private static record Registration(UserProxiesClient client, AtomicLong lastAccess) {
+	}
+}
@@ -0,0 +1,54 @@
+package com.c4_soft.user_proxies.api.keycloak;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+	static final long OPEN_DURATION = 1000L;
+
+	@Test
+	void whenFailureThresholdIsReachedThenCircuitOpensThenLetsOneTrialThroughThenClosesOnSuccess() {
+		final var breaker = new CircuitBreaker(2, OPEN_DURATION);
+
+		// closed
+		assertThat(breaker.tryAcquire(0L)).isTrue();
+		breaker.onFailure(0L);
+		assertThat(breaker.tryAcquire(0L)).isTrue();
+		breaker.onFailure(0L);
+
+		// open
+		assertThat(breaker.tryAcquire(OPEN_DURATION - 1L)).isFalse();
+
+		// half-open: a single trial
+		assertThat(breaker.tryAcquire(OPEN_DURATION)).isTrue();
+		assertThat(breaker.tryAcquire(OPEN_DURATION)).isFalse();
+
+		// closed again
+		breaker.onSuccess();
+		assertThat(breaker.tryAcquire(OPEN_DURATION)).isTrue();
+		assertThat(breaker.tryAcquire(OPEN_DURATION)).isTrue();
+	}
+
+	@Test
+	void whenTrialFailsThenCircuitOpensAgain() {
+		final var breaker = new CircuitBreaker(1, OPEN_DURATION);
+		breaker.onFailure(0L);
+
+		assertThat(breaker.tryAcquire(OPEN_DURATION)).isTrue();
+		breaker.onFailure(OPEN_DURATION);
+
+		assertThat(breaker.tryAcquire(2 * OPEN_DURATION - 1L)).isFalse();
+		assertThat(breaker.tryAcquire(2 * OPEN_DURATION)).isTrue();
+	}
+
+	@Test
+	void whenThresholdIsLowerThanOneThenCircuitNeverOpens() {
+		final var breaker = new CircuitBreaker(0, OPEN_DURATION);
+		for (var i = 0; i < 10; ++i) {
+			breaker.onFailure(0L);
+		}
+
+		assertThat(breaker.tryAcquire(0L)).isTrue();
+	}
+}
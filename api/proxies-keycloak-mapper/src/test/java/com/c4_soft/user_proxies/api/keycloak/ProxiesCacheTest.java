@@ -0,0 +1,62 @@
+package com.c4_soft.user_proxies.api.keycloak;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ProxiesCacheTest {
+	static final long TTL = 1000L;
+	static final Map<String, List<String>> PROXIES = Map.of("granting", List.of("PROFILE_READ"));
+
+	@Test
+	void whenTtlElapsesBeforeNextBoundaryThenEntryExpiresAtTtl() {
+		final var cache = new ProxiesCache(TTL, 10);
+		cache.put("tenant", PROXIES, 0L, Long.MAX_VALUE);
+
+		assertThat(cache.get("tenant", TTL - 1L)).contains(PROXIES);
+		assertThat(cache.get("tenant", TTL)).isEmpty();
+	}
+
+	@Test
+	void whenNextBoundaryIsBeforeTtlThenEntryExpiresAtBoundary() {
+		final var cache = new ProxiesCache(TTL, 10);
+		cache.put("tenant", PROXIES, 0L, 200L);
+
+		assertThat(cache.get("tenant", 199L)).contains(PROXIES);
+		assertThat(cache.get("tenant", 200L)).isEmpty();
+	}
+
+	@Test
+	void whenExpiredThenStaleValueIsServedWithinMaxStaleness() {
+		final var cache = new ProxiesCache(TTL, 10);
+		cache.put("tenant", PROXIES, 0L, 200L);
+
+		assertThat(cache.getStale("tenant", 5000L, 6000L)).contains(PROXIES);
+		assertThat(cache.getStale("tenant", 6000L, 6000L)).isEmpty();
+	}
+
+	@Test
+	void whenMaxEntriesIsReachedThenLeastRecentlyUsedIsEvicted() {
+		final var cache = new ProxiesCache(TTL, 2);
+		cache.put("a", PROXIES, 0L, Long.MAX_VALUE);
+		cache.put("b", PROXIES, 0L, Long.MAX_VALUE);
+		cache.get("a", 1L);
+		cache.put("c", PROXIES, 0L, Long.MAX_VALUE);
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.get("a", 1L)).isPresent();
+		assertThat(cache.get("b", 1L)).isEmpty();
+		assertThat(cache.get("c", 1L)).isPresent();
+	}
+
+	@Test
+	void whenMaxEntriesIsZeroThenNothingIsCached() {
+		final var cache = new ProxiesCache(TTL, 0);
+		cache.put("tenant", PROXIES, 0L, Long.MAX_VALUE);
+
+		assertThat(cache.size()).isZero();
+	}
+}
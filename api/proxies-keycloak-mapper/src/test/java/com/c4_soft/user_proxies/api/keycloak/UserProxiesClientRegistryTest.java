@@ -0,0 +1,89 @@
+package com.c4_soft.user_proxies.api.keycloak;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UserProxiesClientRegistryTest {
+	static final long AFTER_IDLE_SWEEP = UserProxiesClientRegistry.IDLE_TIMEOUT_MILLIS + 60L * 1000L + 1L;
+
+	Map<UserProxiesClientConfig, UserProxiesClient> built;
+
+	UserProxiesClientRegistry registry;
+
+	@BeforeEach
+	void setUp() {
+		built = new HashMap<>();
+		registry = new UserProxiesClientRegistry(config -> built.computeIfAbsent(config, c -> mock(UserProxiesClient.class)));
+	}
+
+	@Test
+	void whenSameConfigIsRequestedTwiceThenClientIsBuiltOnce() {
+		final var config = config("a");
+
+		assertThat(registry.get("mapper-1", config, 0L)).isSameAs(registry.get("mapper-2", config, 0L));
+		assertThat(registry.size()).isEqualTo(1);
+	}
+
+	@Test
+	void whenClientIsIdleThenItIsClosedOnNextSweep() {
+		final var idle = config("idle");
+		final var active = config("active");
+		registry.get("mapper-1", idle, 0L);
+		registry.get("mapper-2", active, 0L);
+		registry.get("mapper-2", active, UserProxiesClientRegistry.IDLE_TIMEOUT_MILLIS);
+
+		registry.get("mapper-2", active, AFTER_IDLE_SWEEP);
+
+		verify(built.get(idle)).close();
+		verify(built.get(active), never()).close();
+		assertThat(registry.size()).isEqualTo(1);
+	}
+
+	@Test
+	void whenMapperConfigIsModifiedThenPreviousClientIsClosed() {
+		final var previous = config("previous");
+		registry.get("mapper-1", previous, 0L);
+
+		registry.get("mapper-1", config("next"), 0L);
+
+		verify(built.get(previous)).close();
+		assertThat(registry.size()).isEqualTo(1);
+	}
+
+	@Test
+	void whenSupersededConfigIsStillUsedByAnotherMapperThenClientIsNotClosed() {
+		final var shared = config("shared");
+		registry.get("mapper-1", shared, 0L);
+		registry.get("mapper-2", shared, 0L);
+
+		registry.get("mapper-1", config("next"), 0L);
+
+		verify(built.get(shared), never()).close();
+		assertThat(registry.size()).isEqualTo(2);
+	}
+
+	@Test
+	void whenEvictedConfigIsRequestedAgainThenNewClientIsBuilt() {
+		final var config = config("a");
+		final var first = registry.get("mapper-1", config, 0L);
+		registry.get("mapper-2", config("b"), AFTER_IDLE_SWEEP);
+		built.clear();
+
+		final var second = registry.get("mapper-1", config, AFTER_IDLE_SWEEP);
+
+		assertThat(second).isNotSameAs(first);
+	}
+
+	static UserProxiesClientConfig config(String username) {
+		return UserProxiesClientConfig.builder().username(username).authorizationUri("http://localhost/token")
+				.userProxiesBaseUri("http://localhost/users").build();
+	}
+}
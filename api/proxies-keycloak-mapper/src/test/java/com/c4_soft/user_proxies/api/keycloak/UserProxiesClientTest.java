@@ -0,0 +1,188 @@
+package com.c4_soft.user_proxies.api.keycloak;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Client access token renewal against a local HTTP server standing for both the authorization server and user-proxies-api
+ */
+class UserProxiesClientTest {
+	static final int THREADS = 8;
+
+	HttpServer server;
+
+	ExecutorService serverExecutor;
+
+	AtomicInteger tokenRequestCount;
+
+	volatile int tokenStatus;
+
+	volatile String tokenBody;
+
+	volatile long tokenDelayMillis;
+
+	List<Optional<String>> claimAuthorizations;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		tokenRequestCount = new AtomicInteger();
+		tokenStatus = 200;
+		tokenBody = """
+				{"access_token": "client-token", "expires_in": 300}""";
+		tokenDelayMillis = 0L;
+		claimAuthorizations = new CopyOnWriteArrayList<>();
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/token", exchange -> {
+			tokenRequestCount.incrementAndGet();
+			sleep(tokenDelayMillis);
+			respond(exchange, tokenStatus, tokenBody);
+		});
+		server.createContext("/users", exchange -> {
+			claimAuthorizations.add(Optional.ofNullable(exchange.getRequestHeaders().getFirst("Authorization")));
+			respond(exchange, 200, "{}");
+		});
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	@Test
+	void whenManyThreadsNeedATokenAtOnceThenItIsFetchedOnce() throws Exception {
+		tokenDelayMillis = 200L;
+		final var client = client();
+		final var startGate = new CountDownLatch(1);
+		final var executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final var futures = new ArrayList<Future<?>>();
+			for (var i = 0; i < THREADS; ++i) {
+				futures.add(executor.submit(() -> {
+					startGate.await();
+					return client.getPermissionsByProxiedUsernameFor("tenant");
+				}));
+			}
+			startGate.countDown();
+			for (final var future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(tokenRequestCount.get()).isEqualTo(1);
+		assertThat(claimAuthorizations).hasSize(THREADS).allSatisfy(authorization -> assertThat(authorization).contains("Bearer client-token"));
+	}
+
+	@Test
+	void whenTokenResponseIsEmptyThenRenewalBacksOff() {
+		tokenBody = "{}";
+		final var client = client();
+
+		client.getPermissionsByProxiedUsernameFor("tenant");
+		client.getPermissionsByProxiedUsernameFor("tenant");
+
+		assertThat(tokenRequestCount.get()).isEqualTo(1);
+		assertThat(claimAuthorizations).hasSize(2).allSatisfy(authorization -> assertThat(authorization).isEmpty());
+	}
+
+	@Test
+	void whenTokenHasNoLifespanThenRenewalBacksOff() {
+		tokenBody = """
+				{"access_token": "client-token", "expires_in": 0}""";
+		final var client = client();
+
+		client.getPermissionsByProxiedUsernameFor("tenant");
+		client.getPermissionsByProxiedUsernameFor("tenant");
+
+		assertThat(tokenRequestCount.get()).isEqualTo(1);
+	}
+
+	@Test
+	void whenTokenRequestFailsThenRenewalBacksOff() {
+		tokenStatus = 500;
+		final var client = client();
+
+		client.getPermissionsByProxiedUsernameFor("tenant");
+		client.getPermissionsByProxiedUsernameFor("tenant");
+
+		assertThat(tokenRequestCount.get()).isEqualTo(1);
+		assertThat(claimAuthorizations).hasSize(2).allSatisfy(authorization -> assertThat(authorization).isEmpty());
+	}
+
+	@Test
+	void whenTokenIsValidThenItIsReused() {
+		final var client = client();
+
+		client.getPermissionsByProxiedUsernameFor("tenant");
+		client.getPermissionsByProxiedUsernameFor("tenant");
+
+		assertThat(tokenRequestCount.get()).isEqualTo(1);
+		assertThat(claimAuthorizations).hasSize(2).allSatisfy(authorization -> assertThat(authorization).contains("Bearer client-token"));
+	}
+
+	/**
+	 * @return a client for the local server (each test has its own port, and so its own client)
+	 */
+	UserProxiesClient client() {
+		final var baseUri = "http://localhost:%d".formatted(server.getAddress().getPort());
+		return UserProxiesClient.getInstance(
+				null,
+				UserProxiesClientConfig.builder()
+						.authorizationUri(baseUri + "/token")
+						.username("user-proxies-mapper")
+						.password("secret")
+						.userProxiesBaseUri(baseUri + "/users")
+						.maxConnections(THREADS)
+						.maxIdleTimeSeconds(60L)
+						.connectTimeoutMillis(1000)
+						.responseTimeoutMillis(5000L)
+						// no claim cache and no circuit-breaker: each call requests user-proxies-api, with a client token
+						.proxiesCacheMaxEntries(0)
+						.circuitBreakerFailureThreshold(0)
+						.build());
+	}
+
+	static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		exchange.getRequestBody().readAllBytes();
+		final var bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (var out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
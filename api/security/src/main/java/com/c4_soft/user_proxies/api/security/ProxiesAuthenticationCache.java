@@ -0,0 +1,130 @@
+package com.c4_soft.user_proxies.api.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Size bounded, least-recently-used cache of authentication principals, keyed by a SHA-256 digest of the bearer string: claims of a token
+ * replayed by a client during its lifetime are parsed and converted to authorities only once. Entries expire at the token "exp" claim.
+ * <ul>
+ * <li>the token signature and validity are still checked by the JWT decoder for each request, before this cache is reached</li>
+ * <li>only immutable {@link Principal principals} are cached: an authentication is still built for each request, as Spring Security sets
+ * request state on it</li>
+ * <li>bearer strings are not retained by the cache</li>
+ * </ul>
+ * Hits and misses are counted in a "user_proxies.authentication_cache" meter, when a registry is provided.
+ */
+class ProxiesAuthenticationCache {
+	static final String METER_NAME = "user_proxies.authentication_cache";
+
+	private final int maxEntries;
+	private final Map<ByteBuffer, Entry> entries;
+	private final Counter hits;
+	private final Counter misses;
+
+	ProxiesAuthenticationCache(int maxEntries, MeterRegistry meterRegistry) {
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<>(16, .75f, true) {
+			private static final long serialVersionUID = 4529180916734520123L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+				return size() > ProxiesAuthenticationCache.this.maxEntries;
+			}
+		};
+		if (meterRegistry == null) {
+			this.hits = null;
+			this.misses = null;
+		} else {
+			this.hits = Counter.builder(METER_NAME).tag("result", "hit").register(meterRegistry);
+			this.misses = Counter.builder(METER_NAME).tag("result", "miss").register(meterRegistry);
+			meterRegistry.gauge(METER_NAME + ".size", this, ProxiesAuthenticationCache::size);
+		}
+	}
+
+	/**
+	 * @param  bearerString cache key (digested)
+	 * @param  claims       token claims (the "exp" claim sets the entry expiry)
+	 * @param  principal    builds the principal on cache miss
+	 * @return              the cached principal, or a new one
+	 */
+	Principal get(String bearerString, Map<String, Object> claims, Supplier<Principal> principal) {
+		final var now = new Date().getTime();
+		final var key = digest(bearerString);
+		synchronized (this) {
+			final var entry = entries.get(key);
+			if (entry != null && entry.expiresAt() > now) {
+				increment(hits);
+				return entry.principal();
+			}
+		}
+		increment(misses);
+		final var built = principal.get();
+		final var expiresAt = expiresAt(claims);
+		if (expiresAt > now) {
+			synchronized (this) {
+				entries.put(key, new Entry(built, expiresAt));
+			}
+		}
+		return built;
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return epoch milliseconds of the "exp" claim, 0 if missing (such tokens are not cached)
+	 */
+	static long expiresAt(Map<String, Object> claims) {
+		final var exp = claims.get("exp");
+		if (exp instanceof Instant instant) {
+			return instant.toEpochMilli();
+		}
+		if (exp instanceof Date date) {
+			return date.getTime();
+		}
+		if (exp instanceof Number seconds) {
+			return seconds.longValue() * 1000L;
+		}
+		return 0L;
+	}
+
+	static ByteBuffer digest(String bearerString) {
+		try {
+			return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(bearerString.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 support is required from all Java platforms
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void increment(Counter counter) {
+		if (counter != null) {
+			counter.increment();
+		}
+	}
+
+	/**
+	 * @param claims      parsed token claims
+	 * @param authorities authorities converted from the token claims (immutable)
+	 */
+	static record Principal(ProxiesClaimSet claims, Collection<? extends GrantedAuthority> authorities) {
+	}
+
+	private static record Entry(Principal principal, long expiresAt) {
+	}
+}
@@ -1,38 +1,63 @@
 package com.c4_soft.user_proxies.api.security;
 
-import java.util.List;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import com.c4_soft.springaddons.security.oauth2.OpenidClaimSet;
-import com.c4_soft.user_proxies.api.web.dto.Grant;
+import com.c4_soft.user_proxies.api.web.dto.ProxiesClaimFormat;
 
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * The "proxies" claim is parsed lazily: most requests don't evaluate {@code onBehalfOf(...)}, and those which do usually evaluate it for a
+ * single proxied user ({@link #getProxyFor(String)} parses only the entry of that user). The whole claim is parsed only if
+ * {@link #getProxies()} is called. All {@link ProxiesClaimFormat formats} of the claim are accepted.
+ */
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class ProxiesClaimSet extends OpenidClaimSet {
 	private static final long serialVersionUID = 38784488788537111L;
+	public static final String PROXIES_CLAIM = "proxies";
 
-	private final Map<String, Proxy> proxies;
+	// derived from the "proxies" claim (already part of equals, hashCode and toString)
+	@Setter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private transient volatile Map<String, Proxy> proxies;
 
 	public ProxiesClaimSet(Map<String, Object> claims) {
 		super(claims);
-		this.proxies = getProxies(this).stream().collect(Collectors.toMap(Proxy::getProxiedUsername, p -> p));
 	}
 
-	private static List<Proxy> getProxies(OpenidClaimSet claims) {
-		@SuppressWarnings("unchecked")
-		final var proxiesClaim = (Map<String, List<String>>) claims.get("proxies");
-		if (proxiesClaim == null) {
-			return List.of();
+	public Map<String, Proxy> getProxies() {
+		var parsed = proxies;
+		if (parsed == null) {
+			final var masks = ProxiesClaimFormat.decode(get(PROXIES_CLAIM));
+			final var tenantUsername = getPreferredUsername();
+			final var result = new HashMap<String, Proxy>(masks.size() * 4 / 3 + 1);
+			masks.forEach((proxiedUsername, mask) -> result.put(proxiedUsername, new Proxy(proxiedUsername, tenantUsername, mask)));
+			parsed = Collections.unmodifiableMap(result);
+			proxies = parsed;
 		}
-		return proxiesClaim.entrySet().stream().map(e -> new Proxy(e.getKey(), claims.getPreferredUsername(), e.getValue().stream().map(Grant::valueOf).collect(Collectors.toSet()))).toList();
+		return parsed;
 	}
 
+	/**
+	 * @param  username proxied user preferredUsername
+	 * @return          the proxy granted by this user, with no grant if none is in the claim
+	 */
 	public Proxy getProxyFor(String username) {
-		return proxies.getOrDefault(username, new Proxy(username, getName(), Set.of()));
+		final var parsed = proxies;
+		final var proxy = parsed == null ? null : parsed.get(username);
+		if (proxy != null) {
+			return proxy;
+		}
+		final var claim = parsed == null ? get(PROXIES_CLAIM) : null;
+		return new Proxy(username, getPreferredUsername(), claim instanceof Map<?, ?> proxiesClaim ? ProxiesClaimFormat.mask(proxiesClaim.get(username)) : 0);
 	}
 }
@@ -1,11 +1,14 @@
 package com.c4_soft.user_proxies.api.security;
 
 import java.util.Objects;
-import java.util.Set;
 
 import com.c4_soft.springaddons.security.oauth2.spring.C4MethodSecurityExpressionRoot;
 
-class ProxiesMethodSecurityExpressionRoot extends C4MethodSecurityExpressionRoot {
+/**
+ * Public, as well as its methods and the types they return, so that SpEL can compile access-control expressions (see
+ * {@link SecurityConfig#methodSecurityExpressionHandler(org.springframework.expression.spel.SpelCompilerMode)})
+ */
+public class ProxiesMethodSecurityExpressionRoot extends C4MethodSecurityExpressionRoot {
 
 	public boolean is(String preferredUsername) {
 		return Objects.equals(getAuthentication().getName(), preferredUsername);
@@ -13,7 +16,7 @@ class ProxiesMethodSecurityExpressionRoot extends C4MethodSecurityExpressionRoot
 
 	public Proxy onBehalfOf(String proxiedUsername) {
 		return get(ProxiesAuthentication.class).map(a -> a.getProxyFor(proxiedUsername))
-				.orElse(new Proxy(proxiedUsername, getAuthentication().getName(), Set.of()));
+				.orElseGet(() -> new Proxy(proxiedUsername, getAuthentication().getName(), 0));
 	}
 
 	public boolean isNice() {
@@ -10,23 +10,38 @@ import lombok.Data;
 
 @Data
 public class Proxy implements Serializable {
-	private static final long serialVersionUID = 6372863392726898339L;
-	
+	private static final long serialVersionUID = -2263526937745718418L;
+
 	private final String proxiedUsername;
 	private final String tenantUsername;
-	private final Set<Grant> permissions;
 
-	public Proxy(String proxiedUsername, String tenantUsername, Set<Grant> permissions) {
+	/**
+	 * {@link Grant} mask (see {@link Grant#mask()})
+	 */
+	private final int grantMask;
+
+	public Proxy(String proxiedUsername, String tenantUsername, int grantMask) {
 		this.proxiedUsername = proxiedUsername;
 		this.tenantUsername = tenantUsername;
-		this.permissions = Collections.unmodifiableSet(permissions);
+		this.grantMask = grantMask;
+	}
+
+	public Proxy(String proxiedUsername, String tenantUsername, Set<Grant> permissions) {
+		this(proxiedUsername, tenantUsername, Grant.toMask(permissions));
+	}
+
+	/**
+	 * @return a read-only copy of the grants. Prefer {@link #can(Grant)} for access decisions.
+	 */
+	public Set<Grant> getPermissions() {
+		return Collections.unmodifiableSet(Grant.fromMask(grantMask));
 	}
 
 	public boolean can(Grant permission) {
-		return permissions.contains(permission);
+		return (grantMask & permission.mask()) != 0;
 	}
 
 	public boolean can(String permission) {
 		return this.can(Grant.valueOf(permission));
 	}
-}
\ No newline at end of file
+}
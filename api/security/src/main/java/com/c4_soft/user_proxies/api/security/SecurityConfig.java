@@ -1,7 +1,15 @@
 package com.c4_soft.user_proxies.api.security;
 
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 
@@ -9,18 +17,49 @@ import com.c4_soft.springaddons.security.oauth2.config.OAuth2AuthoritiesConverte
 import com.c4_soft.springaddons.security.oauth2.config.synchronised.OAuth2AuthenticationFactory;
 import com.c4_soft.springaddons.security.oauth2.spring.C4MethodSecurityExpressionHandler;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
 @EnableMethodSecurity(prePostEnabled = true)
 public class SecurityConfig {
 
+	/**
+	 * @param authenticationCacheMaxEntries set to a positive value to cache parsed claims and authorities by bearer string digest (see
+	 *                                      {@link ProxiesAuthenticationCache})
+	 */
 	@Bean
-	OAuth2AuthenticationFactory authenticationBuilder(OAuth2AuthoritiesConverter authoritiesConverter) {
-		return (bearerString, claims) -> new ProxiesAuthentication(new ProxiesClaimSet(claims),
-				authoritiesConverter.convert(claims), bearerString);
+	OAuth2AuthenticationFactory authenticationBuilder(
+			OAuth2AuthoritiesConverter authoritiesConverter,
+			@Value("${com.c4-soft.user-proxies.security.authentication-cache.max-entries:0}") int authenticationCacheMaxEntries,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		if (authenticationCacheMaxEntries < 1) {
+			return (bearerString, claims) -> authentication(authoritiesConverter, bearerString, claims);
+		}
+		final var cache = new ProxiesAuthenticationCache(authenticationCacheMaxEntries, meterRegistry.getIfAvailable());
+		return (bearerString, claims) -> {
+			final var principal = cache.get(
+					bearerString,
+					claims,
+					() -> new ProxiesAuthenticationCache.Principal(new ProxiesClaimSet(claims), List.copyOf(authoritiesConverter.convert(claims))));
+			return new ProxiesAuthentication(principal.claims(), principal.authorities(), bearerString);
+		};
 	}
 
+	/**
+	 * @param spelCompilerMode MIXED (default) compiles access-control expressions to bytecode once they were interpreted a few times (and
+	 *                         falls back to interpretation if a compiled expression fails), IMMEDIATE compiles on first evaluation, OFF
+	 *                         always interprets
+	 */
 	@Bean
-	MethodSecurityExpressionHandler methodSecurityExpressionHandler() {
-		return new C4MethodSecurityExpressionHandler(ProxiesMethodSecurityExpressionRoot::new);
+	MethodSecurityExpressionHandler methodSecurityExpressionHandler(
+			@Value("${com.c4-soft.user-proxies.security.spel-compiler-mode:MIXED}") SpelCompilerMode spelCompilerMode) {
+		final var handler = new C4MethodSecurityExpressionHandler(ProxiesMethodSecurityExpressionRoot::new);
+		handler.setExpressionParser(
+				new SpelExpressionParser(new SpelParserConfiguration(spelCompilerMode, ProxiesMethodSecurityExpressionRoot.class.getClassLoader())));
+		return handler;
+	}
+
+	private static ProxiesAuthentication authentication(OAuth2AuthoritiesConverter authoritiesConverter, String bearerString, Map<String, Object> claims) {
+		return new ProxiesAuthentication(new ProxiesClaimSet(claims), authoritiesConverter.convert(claims), bearerString);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package com.c4_soft.user_proxies.api.security;
+
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+import com.c4_soft.user_proxies.api.web.dto.ProxiesClaimFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Parsing cost of the "proxies" claim in each {@link ProxiesClaimFormat}. {@code main} first prints the size the claim adds to a JWT
+ * payload (JSON, then base64url as in the token) for each format and proxies count, and then runs the benchmarks (not part of the unit
+ * tests).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxiesClaimFormatBenchmark {
+
+	@Param({ "NAMES", "MASKS" })
+	ProxiesClaimFormat format;
+
+	@Param({ "1", "50" })
+	int proxiesCount;
+
+	Map<String, Object> claims;
+
+	@Setup
+	public void setUp() {
+		claims = Map.of("sub", "tenant-subject", "preferred_username", "tenant", ProxiesClaimSet.PROXIES_CLAIM, format.encode(proxies(proxiesCount)));
+	}
+
+	@Benchmark
+	public boolean onBehalfOf() {
+		return new ProxiesClaimSet(claims).getProxyFor("proxied-user-0").can(Grant.GREET);
+	}
+
+	@Benchmark
+	public Object allProxies() {
+		return new ProxiesClaimSet(claims).getProxies();
+	}
+
+	static Map<String, List<String>> proxies(int count) {
+		final var proxies = new LinkedHashMap<String, List<String>>();
+		for (var i = 0; i < count; ++i) {
+			proxies.put("proxied-user-" + i, List.of(Grant.PROFILE_READ.name(), Grant.GREET.name(), Grant.PROXIES_READ.name()));
+		}
+		return proxies;
+	}
+
+	public static void main(String[] args) throws JsonProcessingException, RunnerException {
+		final var json = new ObjectMapper();
+		for (final var count : List.of(1, 10, 50)) {
+			for (final var format : ProxiesClaimFormat.values()) {
+				final var claim = json.writeValueAsBytes(Map.of(ProxiesClaimSet.PROXIES_CLAIM, format.encode(proxies(count))));
+				System.out.println("%d proxies, %s: %d JSON bytes, %d base64url bytes".formatted(count, format, claim.length,
+						Base64.getUrlEncoder().withoutPadding().encode(claim).length));
+			}
+		}
+		new Runner(new OptionsBuilder().include(ProxiesClaimFormatBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,88 @@
+package com.c4_soft.user_proxies.api.security;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.c4_soft.springaddons.security.oauth2.OpenidClaimSet;
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+
+/**
+ * Per request cost of the "proxies" claim, as paid by greet-api and user-proxies-api (both build a {@link ProxiesClaimSet} for each
+ * authenticated request). "legacy" reproduces the eager parsing into a map of grant sets, which was in place before lazy parsing and grant
+ * masks. Run with {@code main} (not part of the unit tests) and compare the gc.alloc.rate.norm column (bytes per operation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxiesClaimSetBenchmark {
+
+	@Param({ "1", "20" })
+	int proxiesCount;
+
+	Map<String, Object> claims;
+
+	@Setup
+	public void setUp() {
+		final var proxies = new HashMap<String, List<String>>();
+		for (var i = 0; i < proxiesCount; ++i) {
+			proxies.put("proxied-" + i, List.of(Grant.PROFILE_READ.name(), Grant.GREET.name(), Grant.PROXIES_READ.name()));
+		}
+		claims = Map.of("sub", "tenant-subject", "preferred_username", "tenant", "proxies", proxies);
+	}
+
+	@Benchmark
+	public boolean legacyOnBehalfOf() {
+		return legacyProxyFor(new OpenidClaimSet(claims), "proxied-0").contains(Grant.GREET);
+	}
+
+	@Benchmark
+	public boolean onBehalfOf() {
+		return new ProxiesClaimSet(claims).getProxyFor("proxied-0").can(Grant.GREET);
+	}
+
+	@Benchmark
+	public boolean legacyNoProxyEvaluation() {
+		return legacyProxyFor(new OpenidClaimSet(claims), "tenant").isEmpty();
+	}
+
+	@Benchmark
+	public Object noProxyEvaluation() {
+		return new ProxiesClaimSet(claims);
+	}
+
+	static Set<Grant> legacyProxyFor(OpenidClaimSet claimSet, String username) {
+		@SuppressWarnings("unchecked")
+		final var proxiesClaim = (Map<String, List<String>>) claimSet.get("proxies");
+		final Map<String, Set<Grant>> proxies = proxiesClaim.entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey, e -> Collections.unmodifiableSet(e.getValue().stream().map(Grant::valueOf).collect(Collectors.toSet()))));
+		return proxies.getOrDefault(username, Collections.unmodifiableSet(Set.of()));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ProxiesClaimSetBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+	}
+}
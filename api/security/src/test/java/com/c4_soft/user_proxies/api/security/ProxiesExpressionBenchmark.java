@@ -0,0 +1,79 @@
+package com.c4_soft.user_proxies.api.security;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.parameters.P;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+/**
+ * Per call cost of a typical {@code @PreAuthorize} expression, from evaluation context creation to the boolean result, with interpreted
+ * (OFF, as before) and compiled (IMMEDIATE, what MIXED converges to) SpEL. All three terms of the expression are evaluated. Run with
+ * {@code main} (not part of the unit tests).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxiesExpressionBenchmark {
+	static final String EXPRESSION = "is(#username) or hasAuthority('USERS_ADMIN') or onBehalfOf(#username).can('PROFILE_READ')";
+
+	@Param({ "OFF", "IMMEDIATE" })
+	SpelCompilerMode compilerMode;
+
+	MethodSecurityExpressionHandler handler;
+
+	Expression expression;
+
+	Authentication authentication;
+
+	MethodInvocation invocation;
+
+	@Setup
+	public void setUp() throws NoSuchMethodException {
+		handler = new SecurityConfig().methodSecurityExpressionHandler(compilerMode);
+		expression = handler.getExpressionParser().parseExpression(EXPRESSION);
+		authentication = new ProxiesAuthentication(
+				new ProxiesClaimSet(Map.of("sub", "tenant-subject", "preferred_username", "tenant", "proxies", Map.of("proxied", List.of("PROFILE_READ")))),
+				List.of(),
+				"machin.truc.chose");
+		invocation = new SimpleMethodInvocation(this, ProxiesExpressionBenchmark.class.getMethod("retrieve", String.class), "proxied");
+	}
+
+	@Benchmark
+	public boolean preAuthorize() {
+		return ExpressionUtils.evaluateAsBoolean(expression, handler.createEvaluationContext(() -> authentication, invocation));
+	}
+
+	public String retrieve(@P("username") String username) {
+		return username;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ProxiesExpressionBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,26 @@
+package com.c4_soft.user_proxies.api.domain;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores a set of grants as a single integer column (one bit per grant ordinal)
+ */
+@Converter
+public class GrantsConverter implements AttributeConverter<Set<Grant>, Integer> {
+
+	@Override
+	public Integer convertToDatabaseColumn(Set<Grant> grants) {
+		return grants == null ? 0 : Grant.toMask(grants);
+	}
+
+	@Override
+	public Set<Grant> convertToEntityAttribute(Integer mask) {
+		return mask == null ? EnumSet.noneOf(Grant.class) : Grant.fromMask(mask);
+	}
+}
@@ -1,18 +1,22 @@
 package com.c4_soft.user_proxies.api.domain;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.List;
+import java.util.EnumSet;
+import java.util.Set;
 
 import jakarta.persistence.Column;
-import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotNull;
 
 import com.c4_soft.user_proxies.api.web.dto.Grant;
@@ -24,7 +28,11 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "user_proxies")
+@Table(name = "user_proxies", indexes = {
+		@Index(name = "IDX_PROXY_GRANTED_USER_START_END", columnList = "granted_user_id, start_date, end_date"),
+		@Index(name = "IDX_PROXY_GRANTING_USER_GRANTED_USER", columnList = "granting_user_id, granted_user_id"),
+		@Index(name = "IDX_PROXY_START", columnList = "start_date"),
+		@Index(name = "IDX_PROXY_END", columnList = "end_date") })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -45,9 +53,10 @@ public class Proxy {
 	private User grantedUser;
 
 	@NotNull
-	@ElementCollection(fetch = FetchType.EAGER)
+	@Convert(converter = GrantsConverter.class)
+	@Column(name = "grants")
 	@Default
-	private List<Grant> grants = new ArrayList<>();
+	private Set<Grant> grants = EnumSet.noneOf(Grant.class);
 
 	@NotNull
 	@Column(name = "start_date", nullable = false, updatable = true)
@@ -56,14 +65,42 @@ public class Proxy {
 	@Column(name = "end_date", nullable = true, updatable = true)
 	private Date end;
 
+	/**
+	 * Optimistic lock: a proxy modified by another transaction since it was read can't be overridden
+	 */
+	@Version
+	private Long version;
+
+	/**
+	 * @return read-only grants. Use {@link #setGrants(Collection)}, {@link #allow(Grant)} or {@link #deny(Grant)} to modify it.
+	 */
+	public Set<Grant> getGrants() {
+		return Collections.unmodifiableSet(grants);
+	}
+
+	public void setGrants(Collection<Grant> grants) {
+		final var copy = EnumSet.noneOf(Grant.class);
+		if (grants != null) {
+			copy.addAll(grants);
+		}
+		this.grants = copy;
+	}
+
 	public void allow(Grant grant) {
 		if (!grants.contains(grant)) {
-			grants.add(grant);
+			final var updated = EnumSet.of(grant);
+			updated.addAll(grants);
+			this.grants = updated;
 		}
 	}
 
 	public void deny(Grant grant) {
-		grants.remove(grant);
+		if (grants.contains(grant)) {
+			final var updated = EnumSet.noneOf(Grant.class);
+			updated.addAll(grants);
+			updated.remove(grant);
+			this.grants = updated;
+		}
 	}
 	
 	public boolean isActive() {
@@ -0,0 +1,47 @@
+package com.c4_soft.user_proxies.api.domain;
+
+import java.util.Date;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import com.c4_soft.user_proxies.api.web.dto.ProxyChangeType;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outbox entry: written in the same transaction as the proxy modification it describes. The ID is the offset of the change in the feed and
+ * is assigned by {@link com.c4_soft.user_proxies.api.service.ProxyChangeLog} (not generated).
+ */
+@Entity
+@Table(name = "proxy_changes", indexes = { @Index(name = "IDX_PROXY_CHANGE_AT", columnList = "changed_at") })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProxyChange {
+	@Id
+	private Long id;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false, updatable = false)
+	private ProxyChangeType type;
+
+	@Column(name = "proxy_id", nullable = false, updatable = false)
+	private Long proxyId;
+
+	@Column(name = "granting_username", nullable = false, updatable = false)
+	private String grantingUsername;
+
+	@Column(name = "granted_username", nullable = false, updatable = false)
+	private String grantedUsername;
+
+	@Column(name = "changed_at", nullable = false, updatable = false)
+	private Date at;
+}
@@ -0,0 +1,29 @@
+package com.c4_soft.user_proxies.api.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Single row holding the last offset assigned to a {@link ProxyChange}. It is locked until commit by transactions writing changes, so that
+ * offsets are assigned in commit order.
+ */
+@Entity
+@Table(name = "proxy_change_offsets")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProxyChangeOffset {
+	public static final Integer ID = 1;
+
+	@Id
+	private Integer id;
+
+	@Column(name = "last_offset", nullable = false)
+	private Long lastOffset;
+}
@@ -3,6 +3,12 @@ package com.c4_soft.user_proxies.api.domain;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -17,14 +23,25 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * Users are held in Hibernate second-level cache, by ID and by preferredUsername (natural ID). Use
+ * {@link com.c4_soft.user_proxies.api.jpa.UserRepository#findByPreferredUsername(String)} to benefit from the natural ID cache.
+ */
 @Entity
-@Table(name = "users", uniqueConstraints = { @UniqueConstraint(name = "UK_USER_SUBJECT", columnNames = "subject"),
-		@UniqueConstraint(name = "UK_USER_EMAIL", columnNames = "email"),
-		@UniqueConstraint(name = "UK_USER_USERNAME", columnNames = "username") })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
+@Table(name = "users", uniqueConstraints = { @UniqueConstraint(name = User.UK_SUBJECT, columnNames = "subject"),
+		@UniqueConstraint(name = User.UK_EMAIL, columnNames = "email"),
+		@UniqueConstraint(name = User.UK_USERNAME, columnNames = "username") })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
+	public static final String UK_SUBJECT = "UK_USER_SUBJECT";
+	public static final String UK_EMAIL = "UK_USER_EMAIL";
+	public static final String UK_USERNAME = "UK_USER_USERNAME";
+
 	@Id
 	@GeneratedValue
 	private Long id;
@@ -36,6 +53,7 @@ public class User {
 	@Email
 	private String email;
 
+	@NaturalId(mutable = true)
 	@Column(name = "username", nullable = false)
 	private String preferredUsername;
 
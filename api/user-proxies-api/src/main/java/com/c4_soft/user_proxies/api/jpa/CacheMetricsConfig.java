@@ -0,0 +1,25 @@
+package com.c4_soft.user_proxies.api.jpa;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Second-level and natural ID cache hit / miss meters ("hibernate.second.level.cache.requests" and "hibernate.cache.natural.id.requests")
+ * are published by hibernate-micrometer from Hibernate statistics: without statistics, these meters are not registered.
+ */
+@Configuration
+public class CacheMetricsConfig {
+
+	/**
+	 * @param isCacheMetricsEnabled enables Hibernate statistics (true by default). Statistics collection has a cost on each session: set to
+	 *                              false on instances where cache metrics are not wanted.
+	 */
+	@Bean
+	HibernatePropertiesCustomizer cacheMetricsHibernatePropertiesCustomizer(
+			@Value("${com.c4-soft.user-proxies.jpa.cache-metrics-enabled:true}") boolean isCacheMetricsEnabled) {
+		return properties -> properties.put(AvailableSettings.GENERATE_STATISTICS, Boolean.toString(isCacheMetricsEnabled));
+	}
+}
@@ -0,0 +1,22 @@
+package com.c4_soft.user_proxies.api.jpa;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.c4_soft.user_proxies.api.domain.ProxyChangeOffset;
+
+import jakarta.persistence.LockModeType;
+
+public interface ProxyChangeOffsetRepository extends JpaRepository<ProxyChangeOffset, Integer> {
+
+	/**
+	 * Locks the offsets row until the end of current transaction
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT o FROM ProxyChangeOffset o WHERE o.id = :id")
+	Optional<ProxyChangeOffset> lockById(@Param("id") Integer id);
+}
@@ -0,0 +1,31 @@
+package com.c4_soft.user_proxies.api.jpa;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.c4_soft.user_proxies.api.domain.ProxyChange;
+
+public interface ProxyChangeRepository extends JpaRepository<ProxyChange, Long> {
+
+	/**
+	 * @param  offset offset of the last change already read
+	 * @param  page   page size (page number should be 0)
+	 * @return        changes following the provided offset, in offset order
+	 */
+	@Query("SELECT c FROM ProxyChange c WHERE c.id > :offset ORDER BY c.id")
+	List<ProxyChange> findPageAfter(@Param("offset") Long offset, Pageable page);
+
+	@Query("SELECT MIN(c.id) FROM ProxyChange c")
+	Optional<Long> findFirstOffset();
+
+	@Modifying
+	@Query("DELETE FROM ProxyChange c WHERE c.at < :date")
+	int deleteChangedBefore(@Param("date") Date date);
+}
@@ -0,0 +1,11 @@
+package com.c4_soft.user_proxies.api.jpa;
+
+import java.util.Set;
+
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+
+/**
+ * Projection of a proxy grants: the granted user can act on behalf of grantingUsername with grants
+ */
+public record ProxyGrants(String grantingUsername, Set<Grant> grants) {
+}
@@ -0,0 +1,60 @@
+package com.c4_soft.user_proxies.api.jpa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Proxies grants used to be stored in a "proxy_grants" element-collection table (one row per grant ordinal). This moves it to the
+ * "grants" bitmask column of "user_proxies" and drops the legacy table. It is a no-op once the legacy table is gone.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProxyGrantsMigration implements ApplicationRunner {
+	static final String LEGACY_TABLE = "proxy_grants";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	@Override
+	@Transactional
+	public void run(ApplicationArguments args) {
+		if (!isLegacyTablePresent()) {
+			return;
+		}
+		final Map<Long, Integer> masks = new HashMap<>();
+		jdbcTemplate.query("SELECT proxy_id, grants FROM " + LEGACY_TABLE, rs -> {
+			masks.merge(rs.getLong(1), 1 << rs.getInt(2), (a, b) -> a | b);
+		});
+		jdbcTemplate.batchUpdate("UPDATE user_proxies SET grants = ? WHERE id = ?", new ArrayList<>(masks.entrySet()), 100, (ps, mask) -> {
+			ps.setInt(1, mask.getValue());
+			ps.setLong(2, mask.getKey());
+		});
+		jdbcTemplate.update("UPDATE user_proxies SET grants = 0 WHERE grants IS NULL");
+		jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+		log.info("Migrated grants of {} proxies from {} table to user_proxies.grants bitmask", masks.size(), LEGACY_TABLE);
+	}
+
+	private boolean isLegacyTablePresent() {
+		return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+			try (final var tables = connection.getMetaData().getTables(null, null, "%", new String[] { "TABLE" })) {
+				while (tables.next()) {
+					if (LEGACY_TABLE.equalsIgnoreCase(tables.getString("TABLE_NAME"))) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}));
+	}
+}
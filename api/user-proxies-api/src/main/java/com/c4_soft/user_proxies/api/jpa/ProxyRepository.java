@@ -1,25 +1,206 @@
 package com.c4_soft.user_proxies.api.jpa;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.lang.Nullable;
 
 import com.c4_soft.user_proxies.api.domain.Proxy;
 import com.c4_soft.user_proxies.api.domain.Proxy_;
+import com.c4_soft.user_proxies.api.domain.User;
 import com.c4_soft.user_proxies.api.domain.User_;
 
 public interface ProxyRepository extends JpaRepository<Proxy, Long>, JpaSpecificationExecutor<Proxy> {
+
+	/**
+	 * Fetches users with proxies, in a single query (instead of one query per user)
+	 */
+	@Override
+	@EntityGraph(attributePaths = { Proxy_.GRANTING_USER, Proxy_.GRANTED_USER })
+	List<Proxy> findAll(@Nullable Specification<Proxy> spec);
+
+	@Query("""
+			SELECT new com.c4_soft.user_proxies.api.jpa.ProxyGrants(p.grantingUser.preferredUsername, p.grants)
+			FROM Proxy p
+			WHERE p.grantedUser.preferredUsername = :grantedUsername AND p.start <= :date AND (p.end IS NULL OR p.end > :date)
+			""")
+	List<ProxyGrants> findActiveGrantedProxies(@Param("grantedUsername") String grantedUsername, @Param("date") Date date);
+
+	/**
+	 * @param  grantedUsername preferred_username of the user proxies are granted to
+	 * @param  date            reference date
+	 * @return                 proxies granted to the user and not ended at reference date (same as {@link #searchSpec(Optional, Optional, Optional)}
+	 *                         with granted username only), as projections
+	 */
+	@Query("""
+			SELECT p.id AS id, p.grantingUser.preferredUsername AS grantingUsername, p.grantedUser.preferredUsername AS grantedUsername,
+				p.grants AS grants, p.start AS startDate, p.end AS endDate
+			FROM Proxy p
+			WHERE p.grantedUser.preferredUsername = :grantedUsername AND (p.end IS NULL OR p.end >= :date)
+			""")
+	List<ProxyView> findGrantedProxyViews(@Param("grantedUsername") String grantedUsername, @Param("date") Date date);
+
+	/**
+	 * @param  grantedUsername preferred_username of the user proxies are granted to
+	 * @param  date            reference date
+	 * @return                 proxies granted to the user, started at reference date and not ended yet (same as {@link Proxy#isActive()} but
+	 *                         evaluated by the database), as projections
+	 */
+	@Query("""
+			SELECT p.id AS id, p.grantingUser.preferredUsername AS grantingUsername, p.grantedUser.preferredUsername AS grantedUsername,
+				p.grants AS grants, p.start AS startDate, p.end AS endDate
+			FROM Proxy p
+			WHERE p.grantedUser.preferredUsername = :grantedUsername AND p.start <= :date AND (p.end IS NULL OR p.end > :date)
+			""")
+	List<ProxyView> findActiveGrantedProxyViews(@Param("grantedUsername") String grantedUsername, @Param("date") Date date);
+
+	/**
+	 * @param  grantingUsername preferred_username of the user who granted proxies
+	 * @param  date             reference date
+	 * @return                  proxies granted by the user and not ended at reference date, as projections
+	 */
+	@Query("""
+			SELECT p.id AS id, p.grantingUser.preferredUsername AS grantingUsername, p.grantedUser.preferredUsername AS grantedUsername,
+				p.grants AS grants, p.start AS startDate, p.end AS endDate
+			FROM Proxy p
+			WHERE p.grantingUser.preferredUsername = :grantingUsername AND (p.end IS NULL OR p.end >= :date)
+			""")
+	List<ProxyView> findGrantingProxyViews(@Param("grantingUsername") String grantingUsername, @Param("date") Date date);
+
+	/**
+	 * Keyset page of all proxies, ordered by ID
+	 *
+	 * @param  cursor ID of the last proxy of previous page (0 for the first page)
+	 * @param  page   page size (page number should be 0)
+	 * @return        proxies as projections
+	 */
+	@Query("""
+			SELECT p.id AS id, p.grantingUser.preferredUsername AS grantingUsername, p.grantedUser.preferredUsername AS grantedUsername,
+				p.grants AS grants, p.start AS startDate, p.end AS endDate
+			FROM Proxy p
+			WHERE p.id > :cursor
+			ORDER BY p.id
+			""")
+	List<ProxyView> findViewsPage(@Param("cursor") Long cursor, Pageable page);
+
+	/**
+	 * @param  from exclusive lower bound
+	 * @param  to   inclusive upper bound
+	 * @return      proxies starting or ending in the provided time range, as projections
+	 */
+	@Query("""
+			SELECT p.id AS id, p.grantingUser.preferredUsername AS grantingUsername, p.grantedUser.preferredUsername AS grantedUsername,
+				p.grants AS grants, p.start AS startDate, p.end AS endDate
+			FROM Proxy p
+			WHERE (p.start > :from AND p.start <= :to) OR (p.end > :from AND p.end <= :to)
+			""")
+	List<ProxyView> findViewsWithBoundaryBetween(@Param("from") Date from, @Param("to") Date to);
+
+	/**
+	 * @param  grantingUserIds IDs of users who granted proxies
+	 * @param  grantedUserIds  IDs of users proxies are granted to
+	 * @param  date            reference date
+	 * @return                 proxies not ended at reference date between any of the granting users and any of the granted ones (callers
+	 *                         should filter the pairs they are interested in)
+	 */
+	@Query("""
+			SELECT p
+			FROM Proxy p
+			WHERE p.grantingUser.id IN :grantingUserIds AND p.grantedUser.id IN :grantedUserIds AND (p.end IS NULL OR p.end >= :date)
+			""")
+	List<Proxy> findNotEndedBetween(
+			@Param("grantingUserIds") Collection<Long> grantingUserIds,
+			@Param("grantedUserIds") Collection<Long> grantedUserIds,
+			@Param("date") Date date);
+
+	/**
+	 * @param  grantedUsername preferred_username of the user proxies are granted to
+	 * @param  date            reference date
+	 * @return                 the first start or end date after the reference one among the proxies granted to the user
+	 */
+	@Query("""
+			SELECT MIN(CASE WHEN p.start > :date THEN p.start ELSE p.end END)
+			FROM Proxy p
+			WHERE p.grantedUser.preferredUsername = :grantedUsername AND (p.end IS NULL OR p.end > :date)
+			""")
+	Optional<Date> findNextGrantedProxyBoundary(@Param("grantedUsername") String grantedUsername, @Param("date") Date date);
+
+	/**
+	 * Resolves overlaps between the provided proxy and the not ended ones of the same users pair with at most two bulk statements:
+	 * <ul>
+	 * <li>if the provided proxy has no end, proxies starting at or after its start are deleted</li>
+	 * <li>proxies ending at or after provided one start (or not ending) and starting before provided one ends (or starts, if provided has no
+	 * end) are truncated to end just before provided one starts</li>
+	 * </ul>
+	 * Must run in a transaction. The persistence context is flushed before and cleared after the bulk statements: provided proxy is
+	 * detached.
+	 *
+	 * @param proxy a persisted proxy
+	 * @param now   proxies ended before that date are left untouched
+	 */
+	default void resolveOverlaps(Proxy proxy, Date now) {
+		final var truncatedEnd = new Date(proxy.getStart().getTime() - 1L);
+		if (proxy.getEnd() == null) {
+			deleteSwallowed(proxy.getGrantingUser(), proxy.getGrantedUser(), proxy.getId(), now, proxy.getStart());
+		}
+		truncateOverlapped(
+				proxy.getGrantingUser(),
+				proxy.getGrantedUser(),
+				proxy.getId(),
+				now,
+				proxy.getStart(),
+				proxy.getEnd() == null ? truncatedEnd : proxy.getEnd(),
+				truncatedEnd);
+	}
+
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("""
+			DELETE FROM Proxy p
+			WHERE p.grantingUser = :grantingUser AND p.grantedUser = :grantedUser AND p.id <> :id
+				AND (p.end IS NULL OR (p.end >= :now AND p.end >= :start))
+				AND p.start >= :start
+			""")
+	int deleteSwallowed(
+			@Param("grantingUser") User grantingUser,
+			@Param("grantedUser") User grantedUser,
+			@Param("id") Long id,
+			@Param("now") Date now,
+			@Param("start") Date start);
+
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("""
+			UPDATE Proxy p SET p.end = :truncatedEnd, p.version = p.version + 1
+			WHERE p.grantingUser = :grantingUser AND p.grantedUser = :grantedUser AND p.id <> :id
+				AND (p.end IS NULL OR (p.end >= :now AND p.end >= :start))
+				AND p.start <= :lastStart
+			""")
+	int truncateOverlapped(
+			@Param("grantingUser") User grantingUser,
+			@Param("grantedUser") User grantedUser,
+			@Param("id") Long id,
+			@Param("now") Date now,
+			@Param("start") Date start,
+			@Param("lastStart") Date lastStart,
+			@Param("truncatedEnd") Date truncatedEnd);
+
 	static Specification<Proxy> searchSpec(Optional<String> grantingUsername, Optional<String> grantedUsername, Optional<Date> date) {
 		final var specs =
 				Stream
 						.of(
 								Optional.of(endsAfter(date.orElse(new Date()))),
-								grantingUsername.map(ProxyRepository::grantingUserPreferredUsernameLike),
-								grantedUsername.map(ProxyRepository::grantedUserPreferredUsernameLike),
+								grantingUsername.map(ProxyRepository::grantingUserPreferredUsernameIs),
+								grantedUsername.map(ProxyRepository::grantedUserPreferredUsernameIs),
 								date.map(ProxyRepository::startsBefore))
 						.filter(Optional::isPresent)
 						.map(Optional::get)
@@ -35,15 +216,32 @@ public interface ProxyRepository extends JpaRepository<Proxy, Long>, JpaSpecific
 		return (root, query, cb) -> cb.or(cb.isNull(root.get(Proxy_.end)), cb.greaterThanOrEqualTo(root.get(Proxy_.end), date));
 	}
 
-	static Specification<Proxy> grantingUserPreferredUsernameLike(String grantingUsername) {
-		return (root, query, cb) -> cb.like(root.get(Proxy_.grantingUser).get(User_.preferredUsername), grantingUsername);
+	/**
+	 * @param  grantingUser granting user
+	 * @param  grantedUser  granted user
+	 * @return              proxies between the two users which are not ended yet (compares foreign keys, without joining users)
+	 */
+	static Specification<Proxy> pairSpec(User grantingUser, User grantedUser) {
+		return Specification.where(endsAfter(new Date())).and(grantingUserIs(grantingUser)).and(grantedUserIs(grantedUser));
+	}
+
+	static Specification<Proxy> grantingUserPreferredUsernameIs(String grantingUsername) {
+		return (root, query, cb) -> cb.equal(root.get(Proxy_.grantingUser).get(User_.preferredUsername), grantingUsername);
+	}
+
+	static Specification<Proxy> grantedUserPreferredUsernameIs(String grantedUsername) {
+		return (root, query, cb) -> cb.equal(root.get(Proxy_.grantedUser).get(User_.preferredUsername), grantedUsername);
+	}
+
+	static Specification<Proxy> grantingUserIs(User grantingUser) {
+		return (root, query, cb) -> cb.equal(root.get(Proxy_.grantingUser), grantingUser);
 	}
 
-	static Specification<Proxy> grantedUserPreferredUsernameLike(String grantedUsername) {
-		return (root, query, cb) -> cb.like(root.get(Proxy_.grantedUser).get(User_.preferredUsername), grantedUsername);
+	static Specification<Proxy> grantedUserIs(User grantedUser) {
+		return (root, query, cb) -> cb.equal(root.get(Proxy_.grantedUser), grantedUser);
 	}
 
 	static Specification<Proxy> startsBefore(Date date) {
 		return (root, query, cb) -> cb.lessThanOrEqualTo(root.get(Proxy_.start), date);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,23 @@
+package com.c4_soft.user_proxies.api.jpa;
+
+import java.util.Date;
+import java.util.Set;
+
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+
+/**
+ * Read-only projection of a proxy: only the columns required to build a DTO are selected, and no entity is hydrated nor dirty-checked.
+ */
+public interface ProxyView {
+	Long getId();
+
+	String getGrantingUsername();
+
+	String getGrantedUsername();
+
+	Set<Grant> getGrants();
+
+	Date getStartDate();
+
+	Date getEndDate();
+}
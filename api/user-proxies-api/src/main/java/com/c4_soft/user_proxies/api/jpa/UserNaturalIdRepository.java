@@ -0,0 +1,14 @@
+package com.c4_soft.user_proxies.api.jpa;
+
+import java.util.Optional;
+
+import com.c4_soft.user_proxies.api.domain.User;
+
+/**
+ * {@link UserRepository} fragment for lookups by natural ID, which can be served by Hibernate second-level cache (derived queries
+ * always hit the database)
+ */
+public interface UserNaturalIdRepository {
+
+	Optional<User> findByPreferredUsername(String preferredUsername);
+}
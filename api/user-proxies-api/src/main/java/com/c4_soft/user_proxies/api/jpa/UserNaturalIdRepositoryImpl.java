@@ -0,0 +1,24 @@
+package com.c4_soft.user_proxies.api.jpa;
+
+import java.util.Optional;
+
+import org.hibernate.Session;
+
+import com.c4_soft.user_proxies.api.domain.User;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public Optional<User> findByPreferredUsername(String preferredUsername) {
+		if (preferredUsername == null) {
+			return Optional.empty();
+		}
+		return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(preferredUsername);
+	}
+}
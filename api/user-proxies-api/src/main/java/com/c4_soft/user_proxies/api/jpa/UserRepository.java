@@ -1,18 +1,94 @@
 package com.c4_soft.user_proxies.api.jpa;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.util.StringUtils;
 
 import com.c4_soft.user_proxies.api.domain.User;
 import com.c4_soft.user_proxies.api.domain.User_;
+import com.c4_soft.user_proxies.api.web.dto.UserDto;
 
-public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
+import jakarta.persistence.LockModeType;
 
-	Optional<User> findByPreferredUsername(String preferredUsername);
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User>, UserNaturalIdRepository {
+
+	List<User> findAllByPreferredUsernameIn(Collection<String> preferredUsernames);
+
+	/**
+	 * @return already registered users which would conflict with one of the provided subjects, e-mails or usernames
+	 */
+	@Query("""
+			SELECT new com.c4_soft.user_proxies.api.web.dto.UserDto(u.id, u.subject, u.email, u.preferredUsername)
+			FROM User u
+			WHERE u.subject IN :subjects OR u.email IN :emails OR u.preferredUsername IN :preferredUsernames
+			""")
+	List<UserDto> findConflicting(
+			@Param("subjects") Collection<String> subjects,
+			@Param("emails") Collection<String> emails,
+			@Param("preferredUsernames") Collection<String> preferredUsernames);
+
+	/**
+	 * Pessimistic write lock on users rows, always acquired in ID order so that concurrent transactions locking the same users can't
+	 * deadlock. Used to serialize proxies modifications between two users.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT u FROM User u WHERE u.id IN :ids ORDER BY u.id")
+	List<User> lockAllById(@Param("ids") Collection<Long> ids);
+
+	/**
+	 * @param  pattern lower-case LIKE pattern (see {@link #containsIgnoreCasePattern(String)})
+	 * @return         DTOs of users with e-mail or preferredUsername matching the pattern, ordered by preferredUsername
+	 */
+	@Query("""
+			SELECT new com.c4_soft.user_proxies.api.web.dto.UserDto(u.id, u.subject, u.email, u.preferredUsername)
+			FROM User u
+			WHERE LOWER(u.email) LIKE :pattern OR LOWER(u.preferredUsername) LIKE :pattern
+			ORDER BY u.preferredUsername
+			""")
+	List<UserDto> findDtosByEmailOrPreferredUsernameLike(@Param("pattern") String pattern);
+
+	/**
+	 * Keyset page of users: those with e-mail or preferredUsername matching the pattern and preferredUsername after the cursor, ordered by
+	 * preferredUsername. Only the page size (and no count query) is read, whatever the position in the table.
+	 *
+	 * @param  pattern lower-case LIKE pattern (see {@link #containsIgnoreCasePattern(String)})
+	 * @param  cursor  last preferredUsername of previous page, empty string for the first page
+	 * @param  page    page size (page number should be 0)
+	 * @return         DTOs directly (no managed entity, nor lazy proxies collections)
+	 */
+	@Query("""
+			SELECT new com.c4_soft.user_proxies.api.web.dto.UserDto(u.id, u.subject, u.email, u.preferredUsername)
+			FROM User u
+			WHERE (LOWER(u.email) LIKE :pattern OR LOWER(u.preferredUsername) LIKE :pattern) AND u.preferredUsername > :cursor
+			ORDER BY u.preferredUsername
+			""")
+	List<UserDto> findPageByEmailOrPreferredUsernameLike(@Param("pattern") String pattern, @Param("cursor") String cursor, Pageable page);
+
+	/**
+	 * Same as {@link #findPageByEmailOrPreferredUsernameLike(String, String, Pageable)} but reads preferredUsername only
+	 */
+	@Query("""
+			SELECT u.preferredUsername
+			FROM User u
+			WHERE (LOWER(u.email) LIKE :pattern OR LOWER(u.preferredUsername) LIKE :pattern) AND u.preferredUsername > :cursor
+			ORDER BY u.preferredUsername
+			""")
+	List<String> findPreferredUsernamePageByEmailOrPreferredUsernameLike(
+			@Param("pattern") String pattern,
+			@Param("cursor") String cursor,
+			Pageable page);
+
+	static String containsIgnoreCasePattern(String needle) {
+		return String.format("%%%s%%", needle == null ? "" : needle.trim().toLowerCase());
+	}
 
 	static Specification<User> searchSpec(String emailOrPreferredUsername) {
 		if (!StringUtils.hasText(emailOrPreferredUsername)) {
@@ -26,6 +102,6 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
 
 	private static Specification<User> attibuteLikeIgnoreCase(String attributeName, String needle) {
 		return (root, query, criteriaBuilder) -> criteriaBuilder
-				.like(criteriaBuilder.lower(root.get(attributeName)), String.format("%%%s%%", needle.trim().toLowerCase()));
+				.like(criteriaBuilder.lower(root.get(attributeName)), containsIgnoreCasePattern(needle));
 	}
 }
\ No newline at end of file
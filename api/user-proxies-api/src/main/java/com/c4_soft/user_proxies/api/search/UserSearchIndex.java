@@ -0,0 +1,194 @@
+package com.c4_soft.user_proxies.api.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.c4_soft.user_proxies.api.jpa.UserRepository;
+import com.c4_soft.user_proxies.api.web.dto.UserDto;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory autocomplete index over users preferredUsername and e-mail:
+ * <ul>
+ * <li>a sorted set of lower-case usernames serves prefix matches with a range scan</li>
+ * <li>trigram posting lists (sorted arrays, replaced on write) serve "contains" matches: only entries of the shortest posting list for the
+ * needle trigrams are checked</li>
+ * </ul>
+ * Reads are lock-free and cost depends on the result limit and the selectivity of the needle, not on the number of users. The index is
+ * kept in sync by calling {@link #add(String, String)} when a user is created.
+ * <p>
+ * The index is loaded when the application is ready: posting lists are collected for all users, then sorted and published once per
+ * trigram (incremental adds copy the posting list). Until loading completes, searches are served by the database.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserSearchIndex {
+	static final int NGRAM_LENGTH = 3;
+	private static final int LOAD_PAGE_SIZE = 1000;
+	private static final Entry[] NO_ENTRY = {};
+
+	private final UserRepository userRepo;
+
+	private final NavigableSet<Entry> byUsername = new ConcurrentSkipListSet<>();
+	private final Map<String, Entry[]> byTrigram = new ConcurrentHashMap<>();
+	private volatile boolean isLoaded = false;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		final var entries = new ArrayList<Entry>();
+		final var postings = new HashMap<String, List<Entry>>();
+		var cursor = "";
+		List<UserDto> page;
+		do {
+			page = userRepo.findPageByEmailOrPreferredUsernameLike("%", cursor, PageRequest.ofSize(LOAD_PAGE_SIZE));
+			for (final var user : page) {
+				final var entry = entry(user.getPreferredUsername(), user.getEmail());
+				entries.add(entry);
+				trigrams(entry).forEach(trigram -> postings.computeIfAbsent(trigram, t -> new ArrayList<>()).add(entry));
+				cursor = user.getPreferredUsername();
+			}
+		} while (page.size() == LOAD_PAGE_SIZE);
+
+		byUsername.addAll(entries);
+		// users added while loading are already in the index: merge rather than replace
+		postings.forEach((trigram, list) -> {
+			final var sorted = list.toArray(NO_ENTRY);
+			Arrays.sort(sorted);
+			byTrigram.merge(trigram, sorted, UserSearchIndex::union);
+		});
+		isLoaded = true;
+		log.info("Indexed {} users for autocomplete", entries.size());
+	}
+
+	public void add(String preferredUsername, String email) {
+		final var entry = entry(preferredUsername, email);
+		byUsername.add(entry);
+		trigrams(entry).forEach(trigram -> byTrigram.merge(trigram, new Entry[] { entry }, UserSearchIndex::insert));
+	}
+
+	/**
+	 * @param  part  case insensitive part of the preferredUsername or e-mail
+	 * @param  limit maximum number of results
+	 * @return       preferredUsernames starting with part (alphabetically), then those containing it (alphabetically)
+	 */
+	public List<String> search(String part, int limit) {
+		if (!isLoaded) {
+			return userRepo.findPreferredUsernamePageByEmailOrPreferredUsernameLike(
+					UserRepository.containsIgnoreCasePattern(part),
+					"",
+					PageRequest.ofSize(limit));
+		}
+		final var needle = part.trim().toLowerCase();
+		final var result = new LinkedHashSet<String>(limit);
+
+		for (final var entry : byUsername.tailSet(new Entry(needle, "", ""), true)) {
+			if (result.size() >= limit || !entry.usernameKey().startsWith(needle)) {
+				break;
+			}
+			result.add(entry.preferredUsername());
+		}
+		if (result.size() >= limit || needle.length() < NGRAM_LENGTH) {
+			return List.copyOf(result);
+		}
+
+		var candidates = (Entry[]) null;
+		for (final var trigram : trigrams(needle)) {
+			final var postings = byTrigram.getOrDefault(trigram, NO_ENTRY);
+			if (candidates == null || postings.length < candidates.length) {
+				candidates = postings;
+			}
+		}
+		for (final var entry : candidates) {
+			if (result.size() >= limit) {
+				break;
+			}
+			if (entry.usernameKey().contains(needle) || entry.emailKey().contains(needle)) {
+				result.add(entry.preferredUsername());
+			}
+		}
+		return List.copyOf(result);
+	}
+
+	private static Entry entry(String preferredUsername, String email) {
+		return new Entry(preferredUsername.toLowerCase(), preferredUsername, email == null ? "" : email.toLowerCase());
+	}
+
+	private static Set<String> trigrams(Entry entry) {
+		final var trigrams = trigrams(entry.usernameKey());
+		trigrams.addAll(trigrams(entry.emailKey()));
+		return trigrams;
+	}
+
+	private static Set<String> trigrams(String key) {
+		final var trigrams = new LinkedHashSet<String>();
+		for (var i = 0; i + NGRAM_LENGTH <= key.length(); ++i) {
+			trigrams.add(key.substring(i, i + NGRAM_LENGTH));
+		}
+		return trigrams;
+	}
+
+	private static Entry[] insert(Entry[] postings, Entry[] added) {
+		final var pos = Arrays.binarySearch(postings, added[0]);
+		if (pos >= 0) {
+			return postings;
+		}
+		final var insertAt = -pos - 1;
+		final var updated = new Entry[postings.length + 1];
+		System.arraycopy(postings, 0, updated, 0, insertAt);
+		updated[insertAt] = added[0];
+		System.arraycopy(postings, insertAt, updated, insertAt + 1, postings.length - insertAt);
+		return updated;
+	}
+
+	/**
+	 * @return the union of two sorted posting lists
+	 */
+	private static Entry[] union(Entry[] postings, Entry[] added) {
+		final var merged = new Entry[postings.length + added.length];
+		var i = 0;
+		var j = 0;
+		var k = 0;
+		while (i < postings.length && j < added.length) {
+			final var comparison = postings[i].compareTo(added[j]);
+			if (comparison <= 0) {
+				merged[k++] = postings[i++];
+				if (comparison == 0) {
+					++j;
+				}
+			} else {
+				merged[k++] = added[j++];
+			}
+		}
+		while (i < postings.length) {
+			merged[k++] = postings[i++];
+		}
+		while (j < added.length) {
+			merged[k++] = added[j++];
+		}
+		return k == merged.length ? merged : Arrays.copyOf(merged, k);
+	}
+
+	private static record Entry(String usernameKey, String preferredUsername, String emailKey) implements Comparable<Entry> {
+		@Override
+		public int compareTo(Entry other) {
+			final var byKey = usernameKey.compareTo(other.usernameKey);
+			return byKey != 0 ? byKey : preferredUsername.compareTo(other.preferredUsername);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package com.c4_soft.user_proxies.api.service;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.c4_soft.user_proxies.api.jpa.ProxyRepository;
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * In-memory materialization of currently active proxies, by granted user preferredUsername (tenant): granting user preferredUsername =>
+ * {@link Grant} mask.
+ * <ul>
+ * <li>entries are loaded on first access and reloaded when the next proxy start or end date of the tenant is reached, or when
+ * {@link #TTL_MILLIS} has elapsed: modifications committed by other instances are visible after that time at most</li>
+ * <li>entries of the tenants modified by {@link ProxyService} in this instance are dropped once the transaction is committed</li>
+ * <li>entries are reloaded when {@link ProxyBoundaryScheduler} reports one of the tenant proxies starts or ends, so that reads stay a map
+ * lookup</li>
+ * <li>a scheduled sweep reloads expired entries, and drops entries not accessed for {@link #IDLE_TIMEOUT_MILLIS}</li>
+ * </ul>
+ * Proxies are read outside of map locks and then installed only if the entry they replace is still mapped. An entry read before a commit
+ * and installed after the invalidation which follows that commit is removed right away. Invalidations are counted per tenant (in
+ * {@link #INVALIDATION_STRIPES} stripes by username hash): writes to a tenant don't discard the entries being loaded for others.
+ */
+@Component
+@RequiredArgsConstructor
+public class ActiveProxiesView {
+	static final long IDLE_TIMEOUT_MILLIS = 15L * 60L * 1000L;
+	static final long TTL_MILLIS = 30L * 1000L;
+	static final int INVALIDATION_STRIPES = 1024;
+
+	private final ProxyRepository proxyRepo;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+	/**
+	 * @param  grantedUsername tenant preferredUsername
+	 * @return                 active proxies of the tenant
+	 */
+	public ActiveProxies get(String grantedUsername) {
+		final var now = new Date().getTime();
+		var entry = entries.get(grantedUsername);
+		if (!isValid(entry, now)) {
+			entry = reload(grantedUsername, entry, now);
+		}
+		entry.lastAccess().set(now);
+		return entry.proxies();
+	}
+
+	/**
+	 * Drops the entries of the modified tenants once the transaction is committed
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProxiesChanged(ProxiesChangedEvent event) {
+		event.grantedUsernames().forEach(username -> {
+			invalidations.incrementAndGet(stripe(username));
+			entries.remove(username);
+		});
+	}
+
+	/**
+	 * Reloads the entry of the tenant, if any, as soon as one of its proxies starts or ends
+	 */
+	@EventListener
+	public void onProxyBoundary(ProxyBoundaryEvent event) {
+		refresh(event.grantedUsername(), new Date().getTime());
+	}
+
+	@Scheduled(fixedDelayString = "${com.c4-soft.user-proxies.active-proxies.sweep-interval-millis:5000}")
+	public void sweep() {
+		final var now = new Date().getTime();
+		entries.forEach((username, entry) -> {
+			if (entry.lastAccess().get() < now - IDLE_TIMEOUT_MILLIS) {
+				entries.remove(username, entry);
+			} else if (entry.proxies().validUntil() <= now) {
+				refresh(username, now);
+			}
+		});
+	}
+
+	private void refresh(String grantedUsername, long now) {
+		final var current = entries.get(grantedUsername);
+		if (current != null && !isValid(current, now)) {
+			reload(grantedUsername, current, now);
+		}
+	}
+
+	/**
+	 * @param  grantedUsername tenant preferredUsername
+	 * @param  current         entry to replace (null if none is mapped)
+	 * @param  now             epoch milliseconds
+	 * @return                 the reloaded entry, even if it was not installed
+	 */
+	private Entry reload(String grantedUsername, Entry current, long now) {
+		final var stripe = stripe(grantedUsername);
+		final var invalidation = invalidations.get(stripe);
+		final var loaded = new Entry(load(grantedUsername, now), current == null ? new AtomicLong() : current.lastAccess());
+		final var isInstalled = current == null ? entries.putIfAbsent(grantedUsername, loaded) == null : entries.replace(grantedUsername, current, loaded);
+		if (isInstalled && invalidations.get(stripe) != invalidation) {
+			// proxies might have been read before a commit whose invalidation ran before the entry was installed
+			entries.remove(grantedUsername, loaded);
+		}
+		return loaded;
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	private ActiveProxies load(String grantedUsername, long now) {
+		final var date = new Date(now);
+		final var grantMasks = new HashMap<String, Integer>();
+		proxyRepo.findActiveGrantedProxies(grantedUsername, date)
+				.forEach(proxy -> grantMasks.merge(proxy.grantingUsername(), Grant.toMask(proxy.grants()), (a, b) -> a | b));
+		final var validUntil = proxyRepo.findNextGrantedProxyBoundary(grantedUsername, date).map(Date::getTime).orElse(Long.MAX_VALUE);
+		return new ActiveProxies(Map.copyOf(grantMasks), Math.min(validUntil, now + TTL_MILLIS));
+	}
+
+	private static int stripe(String grantedUsername) {
+		return Math.floorMod(grantedUsername.hashCode(), INVALIDATION_STRIPES);
+	}
+
+	private static boolean isValid(Entry entry, long now) {
+		return entry != null && entry.proxies().validUntil() > now;
+	}
+
+	/**
+	 * @param grantMasks {@link Grant} mask by granting user preferredUsername
+	 * @param validUntil epoch milliseconds of the next proxy start or end, {@link #TTL_MILLIS} after load at most
+	 */
+	public static record ActiveProxies(Map<String, Integer> grantMasks, long validUntil) {
+	}
+
+	private static record Entry(ActiveProxies proxies, AtomicLong lastAccess) {
+	}
+}
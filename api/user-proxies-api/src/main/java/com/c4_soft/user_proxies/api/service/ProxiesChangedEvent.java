@@ -0,0 +1,12 @@
+package com.c4_soft.user_proxies.api.service;
+
+import java.util.Set;
+
+/**
+ * Published by {@link ProxyService} when proxies are created, updated or deleted (overlaps resolution included). Listeners interested in
+ * committed data only should use {@link org.springframework.transaction.event.TransactionalEventListener}.
+ *
+ * @param grantedUsernames preferredUsername of the users proxies are granted to
+ */
+public record ProxiesChangedEvent(Set<String> grantedUsernames) {
+}
@@ -0,0 +1,17 @@
+package com.c4_soft.user_proxies.api.service;
+
+/**
+ * Published by {@link ProxyBoundaryScheduler} when a proxy start or end date is reached
+ */
+public sealed interface ProxyBoundaryEvent permits ProxyActivatedEvent, ProxyExpiredEvent {
+	Long proxyId();
+
+	String grantingUsername();
+
+	String grantedUsername();
+
+	/**
+	 * @return epoch milliseconds of the proxy start or end
+	 */
+	long at();
+}
@@ -0,0 +1,150 @@
+package com.c4_soft.user_proxies.api.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.c4_soft.user_proxies.api.jpa.ProxyRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publishes a {@link ProxyActivatedEvent} when a proxy start date is reached and a {@link ProxyExpiredEvent} when its end date is reached.
+ * <ul>
+ * <li>start and end dates within the next {@link #HORIZON_MILLIS} are loaded in a priority queue, and a single task is scheduled for the
+ * earliest one</li>
+ * <li>the queue is reloaded when half of the horizon has elapsed, and shortly after proxies modifications are committed</li>
+ * <li>an event is published once, even if the queue is reloaded before it is due</li>
+ * </ul>
+ * Events are published from the task scheduler thread(s).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProxyBoundaryScheduler {
+	static final long HORIZON_MILLIS = 60L * 60L * 1000L;
+
+	private final ProxyRepository proxyRepo;
+	private final TaskScheduler taskScheduler;
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final PriorityQueue<ProxyBoundaryEvent> queue = new PriorityQueue<>(Comparator.comparingLong(ProxyBoundaryEvent::at));
+	private final AtomicBoolean isReloadRequired = new AtomicBoolean(true);
+	private long loadedUntil = 0L;
+	private long publishedUntil = 0L;
+	private ScheduledFuture<?> nextPublication = null;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		isReloadRequired.set(false);
+		reload(new Date().getTime());
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProxiesChanged(ProxiesChangedEvent event) {
+		isReloadRequired.set(true);
+	}
+
+	@Scheduled(fixedDelayString = "${com.c4-soft.user-proxies.boundaries.refresh-interval-millis:1000}")
+	public void refresh() {
+		final var now = new Date().getTime();
+		final boolean isHorizonHalfElapsed;
+		synchronized (this) {
+			isHorizonHalfElapsed = now >= loadedUntil - HORIZON_MILLIS / 2;
+		}
+		if (isReloadRequired.getAndSet(false) || isHorizonHalfElapsed) {
+			reload(now);
+		}
+	}
+
+	synchronized int size() {
+		return queue.size();
+	}
+
+	void reload(long now) {
+		final long from;
+		synchronized (this) {
+			if (publishedUntil == 0L) {
+				// first load: boundaries reached before the application started are not published
+				publishedUntil = now;
+			}
+			// boundaries reached while the queue was being reloaded are published late rather than never, with a lookback limited to the horizon
+			from = Math.max(publishedUntil, now - HORIZON_MILLIS);
+		}
+		final var until = now + HORIZON_MILLIS;
+
+		final var boundaries = new ArrayList<ProxyBoundaryEvent>();
+		for (final var proxy : proxyRepo.findViewsWithBoundaryBetween(new Date(from), new Date(until))) {
+			final var start = proxy.getStartDate().getTime();
+			if (start > from && start <= until) {
+				boundaries.add(new ProxyActivatedEvent(proxy.getId(), proxy.getGrantingUsername(), proxy.getGrantedUsername(), start));
+			}
+			if (proxy.getEndDate() != null) {
+				final var end = proxy.getEndDate().getTime();
+				if (end > from && end <= until) {
+					boundaries.add(new ProxyExpiredEvent(proxy.getId(), proxy.getGrantingUsername(), proxy.getGrantedUsername(), end));
+				}
+			}
+		}
+
+		synchronized (this) {
+			queue.clear();
+			boundaries.stream().filter(boundary -> boundary.at() > publishedUntil).forEach(queue::add);
+			loadedUntil = until;
+			schedule();
+		}
+		log.debug("Loaded {} proxy boundaries until {}", boundaries.size(), Instant.ofEpochMilli(until));
+	}
+
+	private void publishDue() {
+		final var now = new Date().getTime();
+		final var due = new ArrayList<ProxyBoundaryEvent>();
+		synchronized (this) {
+			while (!queue.isEmpty() && queue.peek().at() <= now) {
+				due.add(queue.poll());
+			}
+			if (!due.isEmpty()) {
+				publishedUntil = Math.max(publishedUntil, due.get(due.size() - 1).at());
+			}
+			schedule();
+		}
+		publish(due);
+	}
+
+	private void publish(List<ProxyBoundaryEvent> events) {
+		for (final var event : events) {
+			try {
+				eventPublisher.publishEvent(event);
+			} catch (RuntimeException e) {
+				log.warn("Failed to handle {}", event, e);
+			}
+		}
+	}
+
+	/**
+	 * Must be called with the monitor held
+	 */
+	private void schedule() {
+		if (nextPublication != null) {
+			nextPublication.cancel(false);
+			nextPublication = null;
+		}
+		if (!queue.isEmpty()) {
+			nextPublication = taskScheduler.schedule(this::publishDue, Instant.ofEpochMilli(queue.peek().at()));
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package com.c4_soft.user_proxies.api.service;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import com.c4_soft.user_proxies.api.domain.ProxyChange;
+import com.c4_soft.user_proxies.api.jpa.ProxyChangeRepository;
+import com.c4_soft.user_proxies.api.web.UserProxyMapper;
+import com.c4_soft.user_proxies.api.web.dto.ProxyChangeDto;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams {@link ProxyChangeLog} entries to server-sent-events subscribers.
+ * <ul>
+ * <li>each event has the change offset as ID: clients resume with the Last-Event-ID header (EventSource does it when reconnecting)</li>
+ * <li>a "reset" event is sent first when the requested offset was purged (or is unknown): the client missed changes and should drop its
+ * caches</li>
+ * <li>changes are read once for all subscribers, in pages of {@link #PAGE_SIZE}, when proxies modifications are committed and on each
+ * heartbeat</li>
+ * </ul>
+ * Reads run on a dedicated thread and writes on a dedicated pool of {@link #SENDER_THREADS}, so that slow subscribers can't delay the
+ * application task scheduler. Each subscription has its own queue of {@link #QUEUE_CAPACITY} events, drained by at most one sender at a
+ * time. A subscription is dropped when its queue is full or when a send lasts more than {@link #SEND_TIMEOUT_MILLIS}: the client
+ * reconnects and resumes from the last event it received.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProxyChangeFeed {
+	public static final String CHANGE_EVENT = "proxy-change";
+	public static final String RESET_EVENT = "reset";
+	static final int PAGE_SIZE = 500;
+	static final int QUEUE_CAPACITY = 2 * PAGE_SIZE;
+	static final int SENDER_THREADS = 4;
+	static final long SEND_TIMEOUT_MILLIS = 10L * 1000L;
+	static final long SUBSCRIPTION_TIMEOUT_MILLIS = 30L * 60L * 1000L;
+
+	private final ProxyChangeRepository changeRepo;
+	private final ProxyChangeLog changeLog;
+	private final UserProxyMapper proxyMapper;
+
+	private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean isDispatchRequested = new AtomicBoolean(false);
+	private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("proxy-changes-dispatch-"));
+	private final ExecutorService senders = Executors.newFixedThreadPool(SENDER_THREADS, new CustomizableThreadFactory("proxy-changes-send-"));
+
+	/**
+	 * @param  lastOffset offset of the last change received by the client (null to receive only changes committed from now on)
+	 * @return            an emitter for changes following the provided offset
+	 */
+	public SseEmitter subscribe(Long lastOffset) {
+		final var emitter = new SseEmitter(SUBSCRIPTION_TIMEOUT_MILLIS);
+		final var currentOffset = changeLog.getLastOffset();
+		var offset = lastOffset == null ? currentOffset : lastOffset;
+		try {
+			if (offset > currentOffset) {
+				emitter.send(SseEmitter.event().name(RESET_EVENT).id(Long.toString(currentOffset)).data(currentOffset));
+				offset = currentOffset;
+			} else if (offset + 1L < changeLog.getFirstOffset()) {
+				offset = changeLog.getFirstOffset() - 1L;
+				emitter.send(SseEmitter.event().name(RESET_EVENT).id(Long.toString(offset)).data(offset));
+			}
+		} catch (IOException e) {
+			emitter.completeWithError(e);
+			return emitter;
+		}
+
+		final var subscription = new Subscription(emitter, offset);
+		emitter.onCompletion(() -> subscriptions.remove(subscription));
+		emitter.onTimeout(() -> subscriptions.remove(subscription));
+		emitter.onError(e -> subscriptions.remove(subscription));
+		subscriptions.add(subscription);
+		requestDispatch();
+
+		return emitter;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProxiesChanged(ProxiesChangedEvent event) {
+		requestDispatch();
+	}
+
+	/**
+	 * Keeps connections open through proxies, drops subscriptions stuck in a send and catches up with changes committed by other instances.
+	 * Does not block: heartbeats are queued like changes.
+	 */
+	@Scheduled(fixedDelayString = "${com.c4-soft.user-proxies.changes.heartbeat-interval-millis:15000}")
+	public void heartbeat() {
+		final var now = new Date().getTime();
+		for (final var subscription : subscriptions) {
+			final var sendingSince = subscription.getSendingSince();
+			if (sendingSince != 0L && sendingSince < now - SEND_TIMEOUT_MILLIS) {
+				drop(subscription, "send timeout");
+			} else {
+				enqueue(subscription, SseEmitter.event().comment("heartbeat"));
+			}
+		}
+		requestDispatch();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		dispatcher.shutdownNow();
+		senders.shutdownNow();
+	}
+
+	int size() {
+		return subscriptions.size();
+	}
+
+	private void requestDispatch() {
+		if (isDispatchRequested.compareAndSet(false, true)) {
+			try {
+				dispatcher.execute(this::dispatch);
+			} catch (RejectedExecutionException e) {
+				log.debug("Proxy changes feed is shut down");
+			}
+		}
+	}
+
+	private void dispatch() {
+		isDispatchRequested.set(false);
+		List<ProxyChange> page;
+		do {
+			final var from = subscriptions.stream().mapToLong(Subscription::getOffset).min();
+			if (from.isEmpty()) {
+				return;
+			}
+			page = changeRepo.findPageAfter(from.getAsLong(), PageRequest.ofSize(PAGE_SIZE));
+			final var changes = page.stream().map(change -> new OffsetChange(change.getId(), proxyMapper.toDto(change))).toList();
+			for (final var subscription : subscriptions) {
+				for (final var change : changes) {
+					if (change.offset() > subscription.getOffset()) {
+						// event builders are not shareable: each subscription gets its own
+						final var event = SseEmitter.event().name(CHANGE_EVENT).id(Long.toString(change.offset())).data(change.dto(), MediaType.APPLICATION_JSON);
+						if (!enqueue(subscription, event)) {
+							break;
+						}
+						subscription.setOffset(change.offset());
+					}
+				}
+			}
+		} while (page.size() == PAGE_SIZE);
+	}
+
+	/**
+	 * @return false if the subscription queue is full (the subscription is then dropped)
+	 */
+	private boolean enqueue(Subscription subscription, SseEventBuilder event) {
+		if (!subscription.getEvents().offer(event)) {
+			drop(subscription, "queue full");
+			return false;
+		}
+		if (subscription.getIsDraining().compareAndSet(false, true)) {
+			try {
+				senders.execute(() -> drain(subscription));
+			} catch (RejectedExecutionException e) {
+				subscription.getIsDraining().set(false);
+			}
+		}
+		return true;
+	}
+
+	private void drain(Subscription subscription) {
+		do {
+			try {
+				SseEventBuilder event;
+				while ((event = subscription.getEvents().poll()) != null) {
+					subscription.setSendingSince(new Date().getTime());
+					subscription.getEmitter().send(event);
+					subscription.setSendingSince(0L);
+				}
+			} catch (IOException | IllegalStateException e) {
+				drop(subscription, e.getMessage());
+				return;
+			} finally {
+				subscription.getIsDraining().set(false);
+			}
+			// an event might have been queued after the last poll and before the draining flag was reset
+		} while (!subscription.getEvents().isEmpty() && subscription.getIsDraining().compareAndSet(false, true));
+	}
+
+	private void drop(Subscription subscription, String reason) {
+		if (subscriptions.remove(subscription)) {
+			log.debug("Dropping proxy changes subscription: {}", reason);
+			subscription.getEvents().clear();
+			subscription.getEmitter().complete();
+		}
+	}
+
+	private static record OffsetChange(long offset, ProxyChangeDto dto) {
+	}
+
+	@Getter
+	private static final class Subscription {
+		private final SseEmitter emitter;
+		private final BlockingQueue<SseEventBuilder> events = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		private final AtomicBoolean isDraining = new AtomicBoolean(false);
+
+		/**
+		 * Offset of the last change queued. Written by the dispatcher thread only.
+		 */
+		@Setter
+		private volatile long offset;
+
+		/**
+		 * Epoch milliseconds of the pending send start (0 when not sending)
+		 */
+		@Setter
+		private volatile long sendingSince = 0L;
+
+		Subscription(SseEmitter emitter, long offset) {
+			this.emitter = emitter;
+			this.offset = offset;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.c4_soft.user_proxies.api.service;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.c4_soft.user_proxies.api.domain.Proxy;
+import com.c4_soft.user_proxies.api.domain.ProxyChange;
+import com.c4_soft.user_proxies.api.domain.ProxyChangeOffset;
+import com.c4_soft.user_proxies.api.jpa.ProxyChangeOffsetRepository;
+import com.c4_soft.user_proxies.api.jpa.ProxyChangeRepository;
+import com.c4_soft.user_proxies.api.web.dto.ProxyChangeType;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Transactional outbox of proxies modifications, read by {@link ProxyChangeFeed}. Offsets are assigned without gaps and in commit order:
+ * the transaction appending changes holds a lock on the {@link ProxyChangeOffset} row until it completes. Changes are retained for
+ * {@link #RETENTION_MILLIS}.
+ * <p>
+ * Change IDs are assigned (not generated): changes are persisted with {@link EntityManager#persist(Object)} so that inserts are batched
+ * without a select for each row, as a merge would do.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProxyChangeLog {
+	static final long RETENTION_MILLIS = 7L * 24L * 60L * 60L * 1000L;
+
+	private final ProxyChangeRepository changeRepo;
+	private final ProxyChangeOffsetRepository offsetRepo;
+	private final PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * @return a change to {@link #append(List) append} (offset is not assigned yet)
+	 */
+	public static ProxyChange change(ProxyChangeType type, Proxy proxy, Date at) {
+		return new ProxyChange(null, type, proxy.getId(), proxy.getGrantingUser().getPreferredUsername(), proxy.getGrantedUser().getPreferredUsername(),
+				at);
+	}
+
+	/**
+	 * Should be the last statement of the transaction modifying proxies: the offsets row remains locked until the transaction completes.
+	 *
+	 * @param changes changes to write in the current transaction
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void append(List<ProxyChange> changes) {
+		if (changes.isEmpty()) {
+			return;
+		}
+		final var offset = offsetRepo.lockById(ProxyChangeOffset.ID).orElseGet(this::createOffset);
+		var lastOffset = offset.getLastOffset();
+		for (final var change : changes) {
+			change.setId(++lastOffset);
+		}
+		offset.setLastOffset(lastOffset);
+		changes.forEach(entityManager::persist);
+	}
+
+	/**
+	 * Creates the offsets row in a distinct transaction (a constraint violation would otherwise roll back the current one) and then locks it.
+	 * When concurrent first writers race, the ones failing with a duplicate key lock the row created by the winner.
+	 */
+	private ProxyChangeOffset createOffset() {
+		final var requiresNew = new TransactionTemplate(transactionManager);
+		requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		try {
+			requiresNew.executeWithoutResult(tx -> offsetRepo.saveAndFlush(new ProxyChangeOffset(ProxyChangeOffset.ID, 0L)));
+		} catch (DataIntegrityViolationException e) {
+			log.debug("Proxy changes offsets row created by a concurrent transaction");
+		}
+		return offsetRepo.lockById(ProxyChangeOffset.ID).orElseThrow();
+	}
+
+	/**
+	 * @return offset of the last change committed (0 if none)
+	 */
+	public long getLastOffset() {
+		return offsetRepo.findById(ProxyChangeOffset.ID).map(ProxyChangeOffset::getLastOffset).orElse(0L);
+	}
+
+	/**
+	 * @return offset of the first retained change (last offset + 1 if none)
+	 */
+	public long getFirstOffset() {
+		return changeRepo.findFirstOffset().orElseGet(() -> getLastOffset() + 1L);
+	}
+
+	@Scheduled(fixedDelayString = "${com.c4-soft.user-proxies.changes.purge-interval-millis:3600000}")
+	@Transactional
+	public void purge() {
+		final var purged = changeRepo.deleteChangedBefore(new Date(new Date().getTime() - RETENTION_MILLIS));
+		if (purged > 0) {
+			log.info("Purged {} proxy changes", purged);
+		}
+	}
+}
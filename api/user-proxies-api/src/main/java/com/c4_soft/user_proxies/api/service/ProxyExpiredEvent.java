@@ -0,0 +1,4 @@
+package com.c4_soft.user_proxies.api.service;
+
+public record ProxyExpiredEvent(Long proxyId, String grantingUsername, String grantedUsername, long at) implements ProxyBoundaryEvent {
+}
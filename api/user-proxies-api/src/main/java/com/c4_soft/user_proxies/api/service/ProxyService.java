@@ -0,0 +1,307 @@
+package com.c4_soft.user_proxies.api.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.c4_soft.user_proxies.api.domain.Proxy;
+import com.c4_soft.user_proxies.api.domain.ProxyChange;
+import com.c4_soft.user_proxies.api.domain.User;
+import com.c4_soft.user_proxies.api.exceptions.ProxyUsersUnmodifiableException;
+import com.c4_soft.user_proxies.api.exceptions.ResourceNotFoundException;
+import com.c4_soft.user_proxies.api.jpa.ProxyRepository;
+import com.c4_soft.user_proxies.api.jpa.UserRepository;
+import com.c4_soft.user_proxies.api.web.UserProxyMapper;
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+import com.c4_soft.user_proxies.api.web.dto.ProxyChangeType;
+import com.c4_soft.user_proxies.api.web.dto.ProxyEditDto;
+import com.c4_soft.user_proxies.api.web.dto.ProxyImportDto;
+import com.c4_soft.user_proxies.api.web.dto.ProxyImportReportDto;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Proxies modifications. Each method runs in a single transaction which starts with a pessimistic lock on the two users of the proxy:
+ * concurrent modifications of proxies between the same users are serialized, and overlaps resolution always sees the proxies committed by
+ * the previous one. {@link Proxy#getVersion()} detects a proxy modified between the moment it is read and the moment the lock is acquired.
+ * Modifications, overlaps resolution included, are appended to the {@link ProxyChangeLog} in the same transaction.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProxyService {
+	static final int IMPORT_CHUNK_SIZE = 1000;
+
+	private final UserRepository userRepo;
+	private final ProxyRepository proxyRepo;
+	private final UserProxyMapper proxyMapper;
+	private final TransactionTemplate transactionTemplate;
+	private final ApplicationEventPublisher eventPublisher;
+	private final ProxyChangeLog changeLog;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * @return the ID of the created proxy
+	 */
+	@Transactional
+	public Long create(String grantingUsername, String grantedUsername, ProxyEditDto dto) {
+		final var proxy = Proxy.builder().grantingUser(getUser(grantingUsername)).grantedUser(getUser(grantedUsername)).build();
+		lockUsers(proxy);
+		proxyMapper.update(proxy, dto);
+
+		// add required READ_PROFILE grant if missing (granted user should always be
+		// able to retrieve granting user profile basic data)
+		proxy.allow(Grant.PROFILE_READ);
+
+		// persist new proxy (and get a DB ID)
+		final var now = new Date();
+		final var created = proxyRepo.save(proxy);
+		final var changes = new ArrayList<ProxyChange>();
+		changes.add(ProxyChangeLog.change(ProxyChangeType.CREATED, created, now));
+
+		// truncate or delete overlapped proxies
+		changes.addAll(overlapChanges(created, now));
+		proxyRepo.resolveOverlaps(created, now);
+		changeLog.append(changes);
+		eventPublisher.publishEvent(new ProxiesChangedEvent(Set.of(grantedUsername)));
+
+		return created.getId();
+	}
+
+	@Transactional
+	public void update(Long id, String grantingUsername, String grantedUsername, ProxyEditDto dto) {
+		final var proxy = getProxy(id, grantingUsername, grantedUsername);
+		lockUsers(proxy);
+		proxyMapper.update(proxy, dto);
+		proxy.allow(Grant.PROFILE_READ);
+		final var now = new Date();
+		final var updated = proxyRepo.save(proxy);
+		final var changes = new ArrayList<ProxyChange>();
+		changes.add(ProxyChangeLog.change(ProxyChangeType.UPDATED, updated, now));
+		changes.addAll(overlapChanges(updated, now));
+		proxyRepo.resolveOverlaps(updated, now);
+		changeLog.append(changes);
+		eventPublisher.publishEvent(new ProxiesChangedEvent(Set.of(grantedUsername)));
+	}
+
+	@Transactional
+	public void delete(Long id, String grantingUsername, String grantedUsername) {
+		final var proxy = getProxy(id, grantingUsername, grantedUsername);
+		lockUsers(proxy);
+		proxyRepo.delete(proxy);
+		changeLog.append(List.of(ProxyChangeLog.change(ProxyChangeType.DELETED, proxy, new Date())));
+		eventPublisher.publishEvent(new ProxiesChangedEvent(Set.of(grantedUsername)));
+	}
+
+	/**
+	 * Imports proxies by chunks of {@value #IMPORT_CHUNK_SIZE}, each in its own transaction. For each chunk:
+	 * <ul>
+	 * <li>users are fetched with a single query, and then locked with a single query</li>
+	 * <li>not ended proxies between those users are fetched with a single query</li>
+	 * <li>overlaps are resolved in memory, in the import order, with the same rules as for {@link #create(String, String, ProxyEditDto)}</li>
+	 * <li>inserts, updates and deletes are flushed with JDBC batches (see hibernate.jdbc.batch_size in application properties)</li>
+	 * </ul>
+	 * Items referencing unknown users or missing mandatory fields are reported and skipped.
+	 *
+	 * @param  proxies proxies to import, in the order overlaps should be resolved
+	 * @return         import report
+	 */
+	public ProxyImportReportDto importProxies(Iterator<ProxyImportDto> proxies) {
+		final var report = new ProxyImportReportDto();
+		final var chunk = new ArrayList<ProxyImportDto>(IMPORT_CHUNK_SIZE);
+		var chunkIndex = 0;
+		while (proxies.hasNext()) {
+			chunk.add(proxies.next());
+			if (chunk.size() == IMPORT_CHUNK_SIZE) {
+				importChunk(chunkIndex, chunk, report);
+				chunkIndex += chunk.size();
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			importChunk(chunkIndex, chunk, report);
+		}
+		return report;
+	}
+
+	private void importChunk(int chunkIndex, List<ProxyImportDto> chunk, ProxyImportReportDto report) {
+		transactionTemplate.executeWithoutResult(tx -> {
+			final var now = new Date();
+			final var users = userRepo
+					.findAllByPreferredUsernameIn(
+							chunk.stream().flatMap(dto -> Stream.of(dto.getGrantingUsername(), dto.getGrantedUsername())).collect(Collectors.toSet()))
+					.stream().collect(Collectors.toMap(User::getPreferredUsername, Function.identity()));
+
+			final var imported = new ArrayList<Proxy>(chunk.size());
+			for (var i = 0; i < chunk.size(); ++i) {
+				final var dto = chunk.get(i);
+				final var grantingUser = users.get(dto.getGrantingUsername());
+				final var grantedUser = users.get(dto.getGrantedUsername());
+				if (grantingUser == null || grantedUser == null) {
+					report.getErrors().add("#%d: no user with preferredUsername %s"
+							.formatted(chunkIndex + i, grantingUser == null ? dto.getGrantingUsername() : dto.getGrantedUsername()));
+				} else if (dto.getGrants() == null || dto.getStart() == null) {
+					report.getErrors().add("#%d: grants and start are mandatory".formatted(chunkIndex + i));
+				} else {
+					final var proxy = Proxy.builder().grantingUser(grantingUser).grantedUser(grantedUser).start(new Date(dto.getStart()))
+							.end(dto.getEnd() == null ? null : new Date(dto.getEnd())).build();
+					proxy.setGrants(dto.getGrants());
+					proxy.allow(Grant.PROFILE_READ);
+					imported.add(proxy);
+				}
+			}
+			if (imported.isEmpty()) {
+				return;
+			}
+
+			final var grantingUserIds = imported.stream().map(proxy -> proxy.getGrantingUser().getId()).collect(Collectors.toSet());
+			final var grantedUserIds = imported.stream().map(proxy -> proxy.getGrantedUser().getId()).collect(Collectors.toSet());
+			userRepo.lockAllById(Stream.concat(grantingUserIds.stream(), grantedUserIds.stream()).collect(Collectors.toSet()));
+
+			final var proxiesByPair = new HashMap<List<Long>, List<Proxy>>();
+			proxyRepo.findNotEndedBetween(grantingUserIds, grantedUserIds, now)
+					.forEach(existing -> proxiesByPair.computeIfAbsent(pairKey(existing), k -> new ArrayList<>()).add(existing));
+
+			// proxies are mutable (and Lombok @Data hashes all fields): track them by identity
+			final var swallowed = Collections.newSetFromMap(new IdentityHashMap<Proxy, Boolean>());
+			final var truncated = new HashMap<Long, Proxy>();
+			final var deleted = new ArrayList<Proxy>();
+			for (final var proxy : imported) {
+				final var pairProxies = proxiesByPair.computeIfAbsent(pairKey(proxy), k -> new ArrayList<>());
+				final var it = pairProxies.iterator();
+				while (it.hasNext()) {
+					final var other = it.next();
+					switch (overlap(proxy, other, now)) {
+					case DELETE:
+						it.remove();
+						if (other.getId() == null) {
+							swallowed.add(other);
+						} else {
+							truncated.remove(other.getId());
+							deleted.add(other);
+						}
+						break;
+					case TRUNCATE:
+						other.setEnd(new Date(proxy.getStart().getTime() - 1L));
+						if (other.getId() != null) {
+							truncated.put(other.getId(), other);
+						}
+						break;
+					default:
+						break;
+					}
+				}
+				pairProxies.add(proxy);
+			}
+
+			final var created = imported.stream().filter(proxy -> !swallowed.contains(proxy)).toList();
+			proxyRepo.deleteAll(deleted);
+			proxyRepo.saveAll(created);
+			final var changes = new ArrayList<ProxyChange>(created.size() + truncated.size() + deleted.size());
+			created.forEach(proxy -> changes.add(ProxyChangeLog.change(ProxyChangeType.CREATED, proxy, now)));
+			truncated.values().forEach(proxy -> changes.add(ProxyChangeLog.change(ProxyChangeType.UPDATED, proxy, now)));
+			deleted.forEach(proxy -> changes.add(ProxyChangeLog.change(ProxyChangeType.DELETED, proxy, now)));
+			changeLog.append(changes);
+			entityManager.flush();
+			entityManager.clear();
+			// overlaps are resolved between proxies of the same users pair: only granted users of imported proxies are affected
+			eventPublisher.publishEvent(
+					new ProxiesChangedEvent(imported.stream().map(proxy -> proxy.getGrantedUser().getPreferredUsername()).collect(Collectors.toSet())));
+
+			report.setImported(report.getImported() + created.size());
+			report.setTruncated(report.getTruncated() + truncated.size());
+			report.setDeleted(report.getDeleted() + deleted.size());
+		});
+	}
+
+	/**
+	 * Must be called before {@link ProxyRepository#resolveOverlaps(Proxy, Date)} (which modifies proxies with bulk statements)
+	 *
+	 * @return changes {@link ProxyRepository#resolveOverlaps(Proxy, Date)} will apply to other proxies of the same users pair
+	 */
+	private List<ProxyChange> overlapChanges(Proxy proxy, Date now) {
+		final var changes = new ArrayList<ProxyChange>();
+		for (final var other : proxyRepo.findNotEndedBetween(List.of(proxy.getGrantingUser().getId()), List.of(proxy.getGrantedUser().getId()), now)) {
+			if (other.getId().equals(proxy.getId())) {
+				continue;
+			}
+			switch (overlap(proxy, other, now)) {
+			case DELETE:
+				changes.add(ProxyChangeLog.change(ProxyChangeType.DELETED, other, now));
+				break;
+			case TRUNCATE:
+				changes.add(ProxyChangeLog.change(ProxyChangeType.UPDATED, other, now));
+				break;
+			default:
+				break;
+			}
+		}
+		return changes;
+	}
+
+	private static List<Long> pairKey(Proxy proxy) {
+		return List.of(proxy.getGrantingUser().getId(), proxy.getGrantedUser().getId());
+	}
+
+	/**
+	 * Same rules as {@link ProxyRepository#resolveOverlaps(Proxy, Date)}
+	 *
+	 * @param  proxy proxy being created or updated
+	 * @param  other proxy of the same users pair
+	 * @param  now   proxies ended before that date are left untouched
+	 * @return       what should be done with the other proxy
+	 */
+	static Overlap overlap(Proxy proxy, Proxy other, Date now) {
+		if (other.getEnd() != null && (other.getEnd().before(now) || other.getEnd().before(proxy.getStart()))) {
+			return Overlap.NONE;
+		}
+		if (proxy.getEnd() == null) {
+			return other.getStart().before(proxy.getStart()) ? Overlap.TRUNCATE : Overlap.DELETE;
+		}
+		return other.getStart().after(proxy.getEnd()) ? Overlap.NONE : Overlap.TRUNCATE;
+	}
+
+	static enum Overlap {
+		NONE, TRUNCATE, DELETE
+	}
+
+	private Proxy getProxy(Long id, String grantingUsername, String grantedUsername) {
+		final var proxy = proxyRepo.findById(id)
+				.orElseThrow(() -> new ResourceNotFoundException(String.format("No user proxy with ID %s", id)));
+
+		if (!proxy.getGrantingUser().getPreferredUsername().equals(grantingUsername)
+				|| !proxy.getGrantedUser().getPreferredUsername().equals(grantedUsername)) {
+			throw new ProxyUsersUnmodifiableException();
+		}
+
+		return proxy;
+	}
+
+	private User getUser(String preferredUsername) {
+		return userRepo.findByPreferredUsername(preferredUsername).orElseThrow(() -> new ResourceNotFoundException(
+				String.format("No user with preferredUsername %s", preferredUsername)));
+	}
+
+	/**
+	 * Serializes proxies modifications between the two users of a proxy (until the end of current transaction)
+	 */
+	private void lockUsers(Proxy proxy) {
+		userRepo.lockAllById(List.of(proxy.getGrantingUser().getId(), proxy.getGrantedUser().getId()));
+	}
+}
@@ -0,0 +1,151 @@
+package com.c4_soft.user_proxies.api.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.c4_soft.user_proxies.api.domain.User;
+import com.c4_soft.user_proxies.api.jpa.UserRepository;
+import com.c4_soft.user_proxies.api.search.UserSearchIndex;
+import com.c4_soft.user_proxies.api.web.UserMapper;
+import com.c4_soft.user_proxies.api.web.dto.UserBulkCreateReportDto;
+import com.c4_soft.user_proxies.api.web.dto.UserCreateDto;
+import com.c4_soft.user_proxies.api.web.dto.UserDto;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Users bulk registration (for instance to sync users from the authorization server)
+ */
+@Service
+@RequiredArgsConstructor
+public class UserService {
+	static final int BULK_CHUNK_SIZE = 1000;
+
+	private final UserRepository userRepo;
+	private final UserMapper userMapper;
+	private final UserSearchIndex userSearchIndex;
+	private final TransactionTemplate transactionTemplate;
+	private final Validator validator;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * Registers users by chunks of {@value #BULK_CHUNK_SIZE}, each in its own transaction. For each chunk, conflicts on {@link User}
+	 * unique constraints (with registered users or between items of the chunk) are detected with a single query and reported, and other
+	 * users are inserted with JDBC batches. Items rejected by validation are reported too. Other items are not impacted.
+	 *
+	 * @param  users users to register
+	 * @return       registration report
+	 */
+	public UserBulkCreateReportDto createAll(Iterator<UserCreateDto> users) {
+		final var report = new UserBulkCreateReportDto();
+		final var chunk = new ArrayList<UserCreateDto>(BULK_CHUNK_SIZE);
+		var chunkIndex = 0;
+		while (users.hasNext()) {
+			chunk.add(users.next());
+			if (chunk.size() == BULK_CHUNK_SIZE) {
+				createChunk(chunkIndex, chunk, report);
+				chunkIndex += chunk.size();
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			createChunk(chunkIndex, chunk, report);
+		}
+		return report;
+	}
+
+	private void createChunk(int chunkIndex, List<UserCreateDto> chunk, UserBulkCreateReportDto report) {
+		final var errors = new TreeMap<Integer, String>();
+		final var valid = new ArrayList<Integer>(chunk.size());
+		for (var i = 0; i < chunk.size(); ++i) {
+			final var violations = validator.validate(chunk.get(i));
+			if (violations.isEmpty()) {
+				valid.add(i);
+			} else {
+				errors.put(i, violations.stream().map(v -> v.getPropertyPath() + " " + v.getMessage()).sorted().collect(Collectors.joining(", ")));
+			}
+		}
+
+		final var registered = valid.isEmpty()
+				? List.<UserDto>of()
+				: userRepo.findConflicting(
+						valid.stream().map(i -> chunk.get(i).getSubject()).collect(Collectors.toSet()),
+						valid.stream().map(i -> chunk.get(i).getEmail()).collect(Collectors.toSet()),
+						valid.stream().map(i -> chunk.get(i).getPreferredUsername()).collect(Collectors.toSet()));
+		final Set<String> subjects = registered.stream().map(UserDto::getSubject).collect(Collectors.toCollection(HashSet::new));
+		final Set<String> emails = registered.stream().map(UserDto::getEmail).collect(Collectors.toCollection(HashSet::new));
+		final Set<String> usernames = registered.stream().map(UserDto::getPreferredUsername).collect(Collectors.toCollection(HashSet::new));
+
+		final var accepted = new ArrayList<Integer>(valid.size());
+		for (final var i : valid) {
+			final var dto = chunk.get(i);
+			// keys are claimed only once the item is accepted: a rejected item must not cause conflicts with the following ones
+			final var conflict = subjects.contains(dto.getSubject()) ? User.UK_SUBJECT
+					: emails.contains(dto.getEmail()) ? User.UK_EMAIL
+					: usernames.contains(dto.getPreferredUsername()) ? User.UK_USERNAME
+					: null;
+			if (conflict != null) {
+				errors.put(i, conflict);
+			} else {
+				subjects.add(dto.getSubject());
+				emails.add(dto.getEmail());
+				usernames.add(dto.getPreferredUsername());
+				accepted.add(i);
+			}
+		}
+
+		try {
+			insert(accepted.stream().map(chunk::get).toList());
+			report.setCreated(report.getCreated() + accepted.size());
+		} catch (DataIntegrityViolationException e) {
+			// users registered concurrently: isolate conflicting ones
+			for (final var i : accepted) {
+				try {
+					insert(List.of(chunk.get(i)));
+					report.setCreated(report.getCreated() + 1);
+				} catch (DataIntegrityViolationException itemException) {
+					errors.put(i, violatedConstraint(itemException).orElse("conflict"));
+				}
+			}
+		}
+
+		errors.forEach((i, error) -> report.getErrors().add("#%d: %s".formatted(chunkIndex + i, error)));
+	}
+
+	private void insert(List<UserCreateDto> dtos) {
+		if (dtos.isEmpty()) {
+			return;
+		}
+		final var users = dtos.stream().map(dto -> {
+			final var user = new User();
+			userMapper.update(user, dto);
+			return user;
+		}).toList();
+		transactionTemplate.executeWithoutResult(tx -> {
+			userRepo.saveAllAndFlush(users);
+			entityManager.clear();
+		});
+		users.forEach(user -> userSearchIndex.add(user.getPreferredUsername(), user.getEmail()));
+	}
+
+	private static Optional<String> violatedConstraint(DataIntegrityViolationException e) {
+		final var message = Optional.ofNullable(e.getMostSpecificCause().getMessage()).orElse("").toUpperCase();
+		return Stream.of(User.UK_SUBJECT, User.UK_EMAIL, User.UK_USERNAME).filter(message::contains).findFirst();
+	}
+}
@@ -1,18 +1,22 @@
 package com.c4_soft.user_proxies.api.web;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.Map;
 
 import org.hibernate.validator.constraints.Length;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,26 +24,45 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.c4_soft.user_proxies.api.domain.Proxy;
 import com.c4_soft.user_proxies.api.domain.User;
-import com.c4_soft.user_proxies.api.exceptions.ProxyUsersUnmodifiableException;
+import com.c4_soft.user_proxies.api.exceptions.BadRequestException;
 import com.c4_soft.user_proxies.api.exceptions.ResourceNotFoundException;
 import com.c4_soft.user_proxies.api.jpa.ProxyRepository;
+import com.c4_soft.user_proxies.api.jpa.ProxyView;
 import com.c4_soft.user_proxies.api.jpa.UserRepository;
+import com.c4_soft.user_proxies.api.search.UserSearchIndex;
+import com.c4_soft.user_proxies.api.service.ActiveProxiesView;
+import com.c4_soft.user_proxies.api.service.ProxyChangeFeed;
+import com.c4_soft.user_proxies.api.service.ProxyService;
+import com.c4_soft.user_proxies.api.service.UserService;
 import com.c4_soft.user_proxies.api.web.dto.Grant;
 import com.c4_soft.user_proxies.api.web.dto.ProxyDto;
 import com.c4_soft.user_proxies.api.web.dto.ProxyEditDto;
+import com.c4_soft.user_proxies.api.web.dto.ProxyImportDto;
+import com.c4_soft.user_proxies.api.web.dto.ProxyImportReportDto;
+import com.c4_soft.user_proxies.api.web.dto.UserBulkCreateReportDto;
 import com.c4_soft.user_proxies.api.web.dto.UserCreateDto;
 import com.c4_soft.user_proxies.api.web.dto.UserDto;
+import com.c4_soft.user_proxies.api.web.dto.UserPageDto;
+import com.c4_soft.user_proxies.api.web.dto.UsernamePageDto;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import lombok.RequiredArgsConstructor;
 
@@ -49,27 +72,91 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 @Tag(name = "Users", description = "CRUD operations for grants delegation between users")
 public class UserController {
+	static final int MAX_PAGE_SIZE = 100;
+
 	private final UserRepository userRepo;
 	private final UserMapper userMapper;
 	private final ProxyRepository proxyRepo;
 	private final UserProxyMapper proxyMapper;
+	private final ProxyService proxyService;
+	private final UserService userService;
+	private final ObjectMapper objectMapper;
+	private final UserSearchIndex userSearchIndex;
+	private final ActiveProxiesView activeProxiesView;
+	private final ProxyChangeFeed proxyChangeFeed;
 
 	@GetMapping
 	@Operation(description = "Retrieve collection of users.")
 	@PreAuthorize("hasAuthority('USERS_ADMIN')")
+	@Transactional(readOnly = true)
 	public List<UserDto> retrieveByEmailOrPreferredUsernamePart(
 			@RequestParam(name = "emailOrPreferredUsernamePart") @Parameter(description = "Mandatory. Case insensitive part of user e-mail or preferredUserName.") @NotEmpty String emailOrPreferredUsernamePart) {
-		return userRepo.findAll(UserRepository.searchSpec(emailOrPreferredUsernamePart)).stream().map(userMapper::toDto)
-				.toList();
+		return userRepo.findDtosByEmailOrPreferredUsernameLike(UserRepository.containsIgnoreCasePattern(emailOrPreferredUsernamePart));
 	}
 
 	@GetMapping("/usernames")
-	@Operation(description = "Retrieve usernames like")
+	@Operation(description = "Retrieve usernames like (autocomplete): usernames starting with the part first, then usernames or e-mails containing it.")
 	@PreAuthorize("isAuthenticated()")
 	public List<String> retrieveUsernamesLike(
-			@RequestParam(name = "preferredUsernamePart") @Parameter(description = "Mandatory. Case insensitive part of preferredUserName.") @Length(min = 3) String preferredUsernamePart) {
-		return userRepo.findAll(UserRepository.searchSpec(preferredUsernamePart)).stream().map(User::getPreferredUsername)
-				.toList();
+			@RequestParam(name = "preferredUsernamePart") @Parameter(description = "Mandatory. Case insensitive part of preferredUserName.") @Length(min = 3) String preferredUsernamePart,
+			@RequestParam(name = "limit", defaultValue = "20") @Parameter(description = "Maximum number of usernames, at most 100.") @Min(1) @Max(MAX_PAGE_SIZE) int limit) {
+		return userSearchIndex.search(preferredUsernamePart, limit);
+	}
+
+	@GetMapping("/page")
+	@Operation(description = "Retrieve a page of users, ordered by preferredUsername. Provide the nextCursor of a page to get the following one.")
+	@PreAuthorize("hasAuthority('USERS_ADMIN')")
+	@Transactional(readOnly = true)
+	public UserPageDto retrievePageByEmailOrPreferredUsernamePart(
+			@RequestParam(name = "emailOrPreferredUsernamePart") @Parameter(description = "Mandatory. Case insensitive part of user e-mail or preferredUserName.") @NotEmpty String emailOrPreferredUsernamePart,
+			@RequestParam(name = "cursor", defaultValue = "") @Parameter(description = "preferredUsername after which the page starts (nextCursor of previous page).") String cursor,
+			@RequestParam(name = "size", defaultValue = "20") @Parameter(description = "Page size, at most 100.") @Min(1) @Max(MAX_PAGE_SIZE) int size) {
+		final var users = userRepo.findPageByEmailOrPreferredUsernameLike(
+				UserRepository.containsIgnoreCasePattern(emailOrPreferredUsernamePart),
+				cursor,
+				PageRequest.ofSize(size + 1));
+		final var items = users.subList(0, Math.min(size, users.size()));
+		return new UserPageDto(items, users.size() > size ? items.get(size - 1).getPreferredUsername() : null);
+	}
+
+	@GetMapping("/usernames/page")
+	@Operation(description = "Retrieve a page of usernames like, ordered alphabetically. Provide the nextCursor of a page to get the following one.")
+	@PreAuthorize("isAuthenticated()")
+	@Transactional(readOnly = true)
+	public UsernamePageDto retrieveUsernamesPageLike(
+			@RequestParam(name = "preferredUsernamePart") @Parameter(description = "Mandatory. Case insensitive part of preferredUserName.") @Length(min = 3) String preferredUsernamePart,
+			@RequestParam(name = "cursor", defaultValue = "") @Parameter(description = "preferredUsername after which the page starts (nextCursor of previous page).") String cursor,
+			@RequestParam(name = "size", defaultValue = "20") @Parameter(description = "Page size, at most 100.") @Min(1) @Max(MAX_PAGE_SIZE) int size) {
+		final var usernames = userRepo.findPreferredUsernamePageByEmailOrPreferredUsernameLike(
+				UserRepository.containsIgnoreCasePattern(preferredUsernamePart),
+				cursor,
+				PageRequest.ofSize(size + 1));
+		final var items = usernames.subList(0, Math.min(size, usernames.size()));
+		return new UsernamePageDto(items, usernames.size() > size ? items.get(size - 1) : null);
+	}
+
+	@GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	@Operation(description = "Stream users as newline delimited JSON, ordered by preferredUsername. Users are read by pages, so that memory usage does not depend on table size.")
+	@PreAuthorize("hasAuthority('USERS_ADMIN')")
+	public ResponseEntity<StreamingResponseBody> exportUsers(
+			@RequestParam(name = "emailOrPreferredUsernamePart", defaultValue = "") @Parameter(description = "Optional. Case insensitive part of user e-mail or preferredUserName.") String emailOrPreferredUsernamePart) {
+		final var pattern = UserRepository.containsIgnoreCasePattern(emailOrPreferredUsernamePart);
+		final StreamingResponseBody body = out -> {
+			var cursor = "";
+			List<UserDto> page;
+			do {
+				page = userRepo.findPageByEmailOrPreferredUsernameLike(pattern, cursor, PageRequest.ofSize(MAX_PAGE_SIZE));
+				for (final var user : page) {
+					out.write(objectMapper.writeValueAsBytes(user));
+					out.write('\n');
+				}
+				out.flush();
+				if (!page.isEmpty()) {
+					cursor = page.get(page.size() - 1).getPreferredUsername();
+				}
+			} while (page.size() == MAX_PAGE_SIZE);
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
 	}
 
 	@PostMapping
@@ -78,12 +165,26 @@ public class UserController {
 	public ResponseEntity<Void> create(@RequestBody @Valid UserCreateDto dto) {
 		final var user = new User();
 		userMapper.update(user, dto);
-		return ResponseEntity.created(URI.create(URLEncoder.encode(userRepo.save(user).getPreferredUsername(), StandardCharsets.UTF_8))).build();
+		final var created = userRepo.save(user);
+		userSearchIndex.add(created.getPreferredUsername(), created.getEmail());
+		return ResponseEntity.created(URI.create(URLEncoder.encode(created.getPreferredUsername(), StandardCharsets.UTF_8))).build();
+	}
+
+	@PostMapping(path = "/bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+	@Operation(description = "Register many users in proxies service, from a JSON array or newline delimited JSON stream. Conflicting or invalid items are reported without aborting the others.")
+	@PreAuthorize("hasAuthority('USERS_ADMIN')")
+	public UserBulkCreateReportDto createAll(HttpServletRequest request) throws IOException {
+		try (final MappingIterator<UserCreateDto> users = objectMapper.readerFor(UserCreateDto.class).readValues(request.getInputStream())) {
+			return userService.createAll(users);
+		} catch (RuntimeJsonMappingException e) {
+			throw new BadRequestException("Invalid user in bulk registration stream: " + e.getMessage(), e);
+		}
 	}
 
 	@GetMapping("/{username}")
 	@Operation(description = "Retrieve a user by preferredUsername")
 	@PreAuthorize("is(#username) or hasAuthority('USERS_ADMIN') or onBehalfOf(#username).can('PROFILE_READ')")
+	@Transactional(readOnly = true)
 	public UserDto retrieveByPreferredUsername(
 			@PathVariable(name = "username", required = false) @Parameter(description = "User preferredUsername.") String username) {
 		return userRepo.findByPreferredUsername(username).map(userMapper::toDto).orElseThrow(
@@ -92,21 +193,78 @@ public class UserController {
 
 	@GetMapping("/{username}/proxies/granted")
 	@PreAuthorize("is(#username) or hasAnyAuthority('TOKEN_ISSUER', 'USERS_ADMIN') or onBehalfOf(#username).can('PROXIES_READ')")
+	@Transactional(readOnly = true)
 	public List<ProxyDto> retrieveGrantedProxies(
 			@PathVariable(name = "username", required = false) @Parameter(description = "User preferredUsername.") String username,
 			@RequestParam(name = "isActiveOnly", defaultValue = "false") boolean isActiveOnly) {
-		return proxyRepo
-				.findAll(ProxyRepository.searchSpec(Optional.empty(), Optional.ofNullable(username), Optional.empty()))
-				.stream().filter(p -> !isActiveOnly || p.isActive()).map(proxyMapper::toDto).toList();
+		final var now = new Date();
+		final var proxies = isActiveOnly ? proxyRepo.findActiveGrantedProxyViews(username, now) : proxyRepo.findGrantedProxyViews(username, now);
+		return proxies.stream().map(proxyMapper::toDto).toList();
+	}
+
+	@GetMapping("/{username}/proxies/granted/claim")
+	@Operation(description = "Retrieve the \"proxies\" private-claim for a user: grants of currently active proxies by granting user preferredUsername. Served from an in-memory view of active proxies. Cache-Control max-age is set to the next proxy start or end, capped to the view TTL.")
+	@PreAuthorize("is(#username) or hasAnyAuthority('TOKEN_ISSUER', 'USERS_ADMIN') or onBehalfOf(#username).can('PROXIES_READ')")
+	public ResponseEntity<Map<String, List<String>>> retrieveProxiesClaim(
+			@PathVariable(name = "username", required = false) @Parameter(description = "User preferredUsername.") String username) {
+		final var now = new Date().getTime();
+		final var activeProxies = activeProxiesView.get(username);
+		final var claim = new HashMap<String, List<String>>(activeProxies.grantMasks().size() * 2);
+		activeProxies.grantMasks().forEach((grantingUsername, mask) -> claim.put(grantingUsername, Grant.fromMask(mask).stream().map(Grant::name).toList()));
+
+		// validUntil is capped to the view TTL: the claim is always cacheable, and never for long
+		final var maxAge = Duration.ofMillis(activeProxies.validUntil() - now);
+		return ResponseEntity.ok().cacheControl(CacheControl.maxAge(maxAge).cachePrivate()).body(claim);
 	}
 
 	@GetMapping("/{username}/proxies/granting")
 	@PreAuthorize("is(#username) or hasAnyAuthority('USERS_ADMIN') or onBehalfOf(#username).can('PROXIES_READ')")
+	@Transactional(readOnly = true)
 	public List<ProxyDto> retrieveGrantingProxies(
 			@PathVariable(name = "username", required = false) @Parameter(description = "User preferredUsername.") String username) {
-		return proxyRepo
-				.findAll(ProxyRepository.searchSpec(Optional.ofNullable(username), Optional.empty(), Optional.empty()))
-				.stream().map(proxyMapper::toDto).toList();
+		return proxyRepo.findGrantingProxyViews(username, new Date()).stream().map(proxyMapper::toDto).toList();
+	}
+
+	@PostMapping(path = "/proxies", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+	@Operation(description = "Bulk proxies import, from a JSON array or newline delimited JSON stream. Overlaps are resolved as for individual creation, in stream order.")
+	@PreAuthorize("hasAuthority('USERS_ADMIN')")
+	public ProxyImportReportDto importProxies(HttpServletRequest request) throws IOException {
+		try (final MappingIterator<ProxyImportDto> proxies = objectMapper.readerFor(ProxyImportDto.class).readValues(request.getInputStream())) {
+			return proxyService.importProxies(proxies);
+		} catch (RuntimeJsonMappingException e) {
+			throw new BadRequestException("Invalid proxy in import stream: " + e.getMessage(), e);
+		}
+	}
+
+	@GetMapping(path = "/proxies/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	@Operation(description = "Server-sent events stream of proxies creations, updates (overlaps truncation included) and deletions, in commit order. Event IDs are offsets: resume with Last-Event-ID header (or after parameter). A \"reset\" event means changes were missed.")
+	@PreAuthorize("hasAnyAuthority('TOKEN_ISSUER', 'USERS_ADMIN')")
+	public SseEmitter streamProxyChanges(
+			@RequestHeader(name = "Last-Event-ID", required = false) @Parameter(description = "Offset of the last change received.") Long lastEventId,
+			@RequestParam(name = "after", required = false) @Parameter(description = "Offset of the last change received, for clients which can't set headers. Only changes committed from now on are streamed if neither this nor Last-Event-ID is set.") Long after) {
+		return proxyChangeFeed.subscribe(lastEventId == null ? after : lastEventId);
+	}
+
+	@GetMapping(path = "/proxies/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	@Operation(description = "Stream all proxies as newline delimited JSON, in the format expected by bulk import.")
+	@PreAuthorize("hasAuthority('USERS_ADMIN')")
+	public ResponseEntity<StreamingResponseBody> exportProxies() {
+		final StreamingResponseBody body = out -> {
+			var cursor = 0L;
+			List<ProxyView> page;
+			do {
+				page = proxyRepo.findViewsPage(cursor, PageRequest.ofSize(MAX_PAGE_SIZE));
+				for (final var proxy : page) {
+					out.write(objectMapper.writeValueAsBytes(proxyMapper.toImportDto(proxy)));
+					out.write('\n');
+				}
+				out.flush();
+				if (!page.isEmpty()) {
+					cursor = page.get(page.size() - 1).getId();
+				}
+			} while (page.size() == MAX_PAGE_SIZE);
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
 	}
 
 	@PostMapping("/{grantingUsername}/proxies/granted/{grantedUsername}")
@@ -116,21 +274,8 @@ public class UserController {
 			@PathVariable(name = "grantingUsername") @Parameter(description = "Proxied user preferredUsername") @NotEmpty String grantingUsername,
 			@PathVariable(name = "grantedUsername") @Parameter(description = "Granted user preferredUsername") @NotEmpty String grantedUsername,
 			@Valid @RequestBody ProxyEditDto dto) {
-		final var proxy = Proxy.builder().grantingUser(getUser(grantingUsername)).grantedUser(getUser(grantedUsername))
-				.build();
-		proxyMapper.update(proxy, dto);
-
-		// add required READ_PROFILE grant if missing (granted user should always be
-		// able to retrieve granting user profile basic data)
-		proxy.allow(Grant.PROFILE_READ);
-
-		// persist new proxy (and get a DB ID)
-		final var created = proxyRepo.save(proxy);
-
-		// process and save proxies overlaps
-		proxyRepo.saveAll(processOverlaps(proxy));
-
-		return ResponseEntity.created(URI.create(created.getId().toString())).build();
+		final var id = proxyService.create(grantingUsername, grantedUsername, dto);
+		return ResponseEntity.created(URI.create(id.toString())).build();
 	}
 
 	@PutMapping("/{grantingUsername}/proxies/granted/{grantedUsername}/{id}")
@@ -141,10 +286,7 @@ public class UserController {
 			@PathVariable(name = "grantedUsername") @Parameter(description = "Granted user preferredUsername") @NotEmpty String grantedUsername,
 			@PathVariable(name = "id") @Parameter(description = "proxy ID") Long id,
 			@Valid @RequestBody ProxyEditDto dto) {
-		final var proxy = getProxy(id, grantingUsername, grantedUsername);
-		proxyMapper.update(proxy, dto);
-		proxy.allow(Grant.PROFILE_READ);
-		proxyRepo.saveAll(processOverlaps(proxy));
+		proxyService.update(id, grantingUsername, grantedUsername, dto);
 		return ResponseEntity.accepted().build();
 	}
 
@@ -155,58 +297,7 @@ public class UserController {
 			@PathVariable(name = "grantingUsername") @Parameter(description = "Proxied user preferredUsername") @NotEmpty String grantingUsername,
 			@PathVariable(name = "grantedUsername") @Parameter(description = "Granted user preferredUsername") @NotEmpty String grantedUsername,
 			@PathVariable(name = "id") @Parameter(description = "proxy ID") Long id) {
-		final var proxy = getProxy(id, grantingUsername, grantedUsername);
-		proxyRepo.delete(proxy);
+		proxyService.delete(id, grantingUsername, grantedUsername);
 		return ResponseEntity.accepted().build();
 	}
-
-	private Proxy getProxy(Long id, String grantingUsername, String grantedUsername) {
-		final var proxy = proxyRepo.findById(id)
-				.orElseThrow(() -> new ResourceNotFoundException(String.format("No user proxy with ID %s", id)));
-
-		if (!proxy.getGrantingUser().getPreferredUsername().equals(grantingUsername)
-				|| !proxy.getGrantedUser().getPreferredUsername().equals(grantedUsername)) {
-			throw new ProxyUsersUnmodifiableException();
-		}
-
-		return proxy;
-	}
-
-	private User getUser(String preferredUsername) {
-		return userRepo.findByPreferredUsername(preferredUsername).orElseThrow(() -> new ResourceNotFoundException(
-				String.format("No user with preferredUsername %s", preferredUsername)));
-	}
-
-	List<Proxy> processOverlaps(Proxy proxy) {
-		final var proxiesToCheck = proxyRepo
-				.findAll(ProxyRepository.searchSpec(Optional.of(proxy.getGrantingUser().getPreferredUsername()),
-						Optional.of(proxy.getGrantedUser().getPreferredUsername()), Optional.empty()));
-		final var modifiedProxies = new ArrayList<Proxy>(proxiesToCheck.size());
-		proxiesToCheck.forEach(existing -> {
-			if (Objects.equals(existing.getId(), proxy.getId())) {
-				// skip provided proxy
-			} else if (existing.getEnd() != null && existing.getEnd().before(proxy.getStart())) {
-				// skip existing ending before provided starts
-			} else if (proxy.getEnd() == null) {
-				// provided proxy has no end
-				if (existing.getStart().after(proxy.getStart()) || existing.getStart().equals(proxy.getStart())) {
-					// any existing proxy starting after provided one is deleted
-					proxyRepo.delete(existing);
-				} else if (existing.getEnd() == null || existing.getEnd().after(proxy.getStart())
-						|| existing.getEnd().equals(proxy.getStart())) {
-					// shorten any proxy ending after provided one starts (because of preceding
-					// condition, we know it overlaps: starts before provided)
-					existing.setEnd(new Date(proxy.getStart().getTime() - 1));
-					modifiedProxies.add(existing);
-				}
-			} else if (existing.getStart().after(proxy.getEnd())) {
-				// skip existing starting after provided starts
-			} else {
-				// existing ending before provided starts already skipped
-				existing.setEnd(new Date(proxy.getStart().getTime() - 1L));
-				modifiedProxies.add(existing);
-			}
-		});
-		return modifiedProxies;
-	}
-}
\ No newline at end of file
+}
@@ -3,14 +3,19 @@ package com.c4_soft.user_proxies.api.web;
 import java.util.Date;
 import java.util.Optional;
 
+import org.mapstruct.AfterMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants.ComponentModel;
 import org.mapstruct.MappingTarget;
 
 import com.c4_soft.user_proxies.api.domain.Proxy;
+import com.c4_soft.user_proxies.api.domain.ProxyChange;
+import com.c4_soft.user_proxies.api.jpa.ProxyView;
+import com.c4_soft.user_proxies.api.web.dto.ProxyChangeDto;
 import com.c4_soft.user_proxies.api.web.dto.ProxyDto;
 import com.c4_soft.user_proxies.api.web.dto.ProxyEditDto;
+import com.c4_soft.user_proxies.api.web.dto.ProxyImportDto;
 
 @Mapper(componentModel = ComponentModel.SPRING)
 public interface UserProxyMapper {
@@ -19,11 +24,28 @@ public interface UserProxyMapper {
 	@Mapping(target = "grantedUsername", source = "grantedUser.preferredUsername")
 	ProxyDto toDto(Proxy domain);
 
+	@Mapping(target = "start", source = "startDate")
+	@Mapping(target = "end", source = "endDate")
+	ProxyDto toDto(ProxyView view);
+
+	@Mapping(target = "start", source = "startDate")
+	@Mapping(target = "end", source = "endDate")
+	ProxyImportDto toImportDto(ProxyView view);
+
+	@Mapping(target = "offset", source = "id")
+	ProxyChangeDto toDto(ProxyChange change);
+
 	@Mapping(target = "id", ignore = true)
 	@Mapping(target = "grantingUser", ignore = true)
 	@Mapping(target = "grantedUser", ignore = true)
+	@Mapping(target = "grants", ignore = true)
 	void update(@MappingTarget Proxy domain, ProxyEditDto dto);
 
+	@AfterMapping
+	default void updateGrants(@MappingTarget Proxy domain, ProxyEditDto dto) {
+		domain.setGrants(dto.getGrants());
+	}
+
 	default Date toDate(Long epoch) {
 		return Optional.ofNullable(epoch).map(Date::new).orElse(null);
 	}
@@ -0,0 +1,35 @@
+package com.c4_soft.user_proxies.api.web.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@XmlRootElement
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProxyImportDto implements Serializable {
+	private static final long serialVersionUID = -2297433591307612741L;
+
+	@NotEmpty
+	private String grantingUsername;
+
+	@NotEmpty
+	private String grantedUsername;
+
+	@NotNull
+	private List<Grant> grants;
+
+	@NotNull
+	private Long start;
+
+	private Long end;
+}
@@ -0,0 +1,44 @@
+package com.c4_soft.user_proxies.api.web.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@XmlRootElement
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProxyImportReportDto implements Serializable {
+	private static final long serialVersionUID = 3305611722470416436L;
+
+	/**
+	 * Number of proxies created
+	 */
+	private int imported;
+
+	/**
+	 * Number of pre-existing proxies shortened because of an overlap with imported ones
+	 */
+	private int truncated;
+
+	/**
+	 * Number of pre-existing proxies deleted because swallowed by imported ones
+	 */
+	private int deleted;
+
+	/**
+	 * Rejected items, as "#{index in the import stream}: {reason}"
+	 */
+	@NotNull
+	@Default
+	private List<String> errors = new ArrayList<>();
+}
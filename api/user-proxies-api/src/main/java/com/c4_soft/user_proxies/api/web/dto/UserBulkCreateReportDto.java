@@ -0,0 +1,34 @@
+package com.c4_soft.user_proxies.api.web.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@XmlRootElement
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserBulkCreateReportDto implements Serializable {
+	private static final long serialVersionUID = -6181364729936311640L;
+
+	/**
+	 * Number of users registered
+	 */
+	private int created;
+
+	/**
+	 * Rejected items, as "#{index in the request}: {reason}" (reason is the violated unique constraint for conflicts)
+	 */
+	@NotNull
+	@Default
+	private List<String> errors = new ArrayList<>();
+}
@@ -0,0 +1,29 @@
+package com.c4_soft.user_proxies.api.web.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@XmlRootElement
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPageDto implements Serializable {
+	private static final long serialVersionUID = 5271530461738958062L;
+
+	@NotNull
+	private List<UserDto> items;
+
+	/**
+	 * preferredUsername to provide as cursor to retrieve next page. Null when this page is the last one.
+	 */
+	private String nextCursor;
+
+}
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.when;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -23,13 +24,14 @@ public class ProxyFixtures {
 				2L,
 				UserFixtures.userA(),
 				UserFixtures.userB(),
-				List.of(Grant.values()),
+				EnumSet.allOf(Grant.class),
 				Date.from(Instant.now().minus(1, ChronoUnit.DAYS)),
-				Date.from(Instant.now().plus(1, ChronoUnit.DAYS)));
+				Date.from(Instant.now().plus(1, ChronoUnit.DAYS)),
+				0L);
 	}
 
 	private static Proxy userBToUserA() {
-		return new Proxy(2L, UserFixtures.userB(), UserFixtures.userA(), List.of(Grant.PROFILE_READ), Date.from(Instant.now().minus(1, ChronoUnit.DAYS)), null);
+		return new Proxy(2L, UserFixtures.userB(), UserFixtures.userA(), EnumSet.of(Grant.PROFILE_READ), Date.from(Instant.now().minus(1, ChronoUnit.DAYS)), null, 0L);
 	}
 
 	public static Map<String, List<Proxy>> all() {
@@ -0,0 +1,204 @@
+package com.c4_soft.user_proxies.api.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Optional;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.c4_soft.user_proxies.api.domain.Proxy;
+import com.c4_soft.user_proxies.api.domain.User;
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ProxyRepositoryTest {
+	@Autowired
+	TestEntityManager em;
+
+	@Autowired
+	ProxyRepository proxyRepo;
+
+	Statistics statistics;
+
+	User grantingUser;
+
+	User grantedUser;
+
+	@BeforeEach
+	void setUp() {
+		grantingUser = em.persist(new User("granting-subject", "granting@c4-soft.com", "granting"));
+		grantedUser = em.persist(new User("granted-subject", "granted@c4-soft.com", "granted"));
+		statistics = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	void whenActiveOnlyThenFutureProxiesAreNotRead() {
+		persistProxy(daysFromNow(-1), daysFromNow(1));
+		for (var i = 1; i <= 50; ++i) {
+			persistProxy(daysFromNow(10 * i), daysFromNow(10 * i + 5));
+		}
+		resetStatistics();
+
+		// projections: the rows read are the rows returned, and no entity is loaded
+		final var now = new Date();
+		assertThat(proxyRepo.findGrantedProxyViews("granted", now)).hasSize(51);
+		assertThat(proxyRepo.findActiveGrantedProxyViews("granted", now)).hasSize(1);
+		assertThat(statistics.getEntityLoadCount()).isZero();
+	}
+
+	@Test
+	void whenProxyEndedOrNotStartedThenNotActive() {
+		final var active = persistProxy(daysFromNow(-2), null);
+		persistProxy(daysFromNow(-2), daysFromNow(-1));
+		persistProxy(daysFromNow(1), null);
+		resetStatistics();
+
+		assertThat(proxyRepo.findActiveGrantedProxyViews("granted", new Date())).extracting(ProxyView::getId).containsExactly(active.getId());
+	}
+
+	@Test
+	void whenUsernameContainsWildcardsThenItIsMatchedExactly() {
+		final var lookalike = em.persist(new User("lookalike-subject", "lookalike@c4-soft.com", "gr%nted"));
+		final var expected = persistProxy(grantingUser, lookalike, daysFromNow(-1), null);
+		persistProxy(daysFromNow(-1), null);
+		resetStatistics();
+
+		assertThat(proxyRepo.findAll(ProxyRepository.searchSpec(Optional.empty(), Optional.of("gr%nted"), Optional.empty())))
+				.extracting(Proxy::getId).containsExactly(expected.getId());
+		assertThat(proxyRepo.findAll(ProxyRepository.searchSpec(Optional.empty(), Optional.of("gr_nted"), Optional.empty()))).isEmpty();
+	}
+
+	@Test
+	void whenSearchingByUsersPairThenOnlyNotEndedProxiesOfThePairAreReturned() {
+		final var other = em.persist(new User("other-subject", "other@c4-soft.com", "other"));
+		final var expected = persistProxy(daysFromNow(-1), daysFromNow(1));
+		persistProxy(daysFromNow(-2), daysFromNow(-1));
+		persistProxy(other, grantedUser, daysFromNow(-1), null);
+		persistProxy(grantingUser, other, daysFromNow(-1), null);
+		resetStatistics();
+
+		assertThat(proxyRepo.findAll(ProxyRepository.pairSpec(grantingUser, grantedUser))).extracting(Proxy::getId)
+				.containsExactly(expected.getId());
+	}
+
+	@Test
+	void whenListingProxiesThenQueriesCountDoesNotDependOnProxiesCount() {
+		final var statementsForOneProxy = statementsToListProxiesGrantedTo("one", 1);
+		final var statementsForTwentyProxies = statementsToListProxiesGrantedTo("twenty", 20);
+
+		assertThat(statementsForOneProxy).isEqualTo(1L);
+		assertThat(statementsForTwentyProxies).isEqualTo(statementsForOneProxy);
+	}
+
+	@Test
+	void whenReadingProxyViewsThenNoEntityIsLoaded() {
+		final var active = persistProxy(daysFromNow(-1), null);
+		final var future = persistProxy(daysFromNow(1), daysFromNow(2));
+		persistProxy(daysFromNow(-2), daysFromNow(-1));
+		resetStatistics();
+
+		final var now = new Date();
+		assertThat(proxyRepo.findGrantedProxyViews("granted", now)).extracting(ProxyView::getId)
+				.containsExactlyInAnyOrder(active.getId(), future.getId());
+		assertThat(proxyRepo.findGrantingProxyViews("granting", now)).extracting(ProxyView::getId)
+				.containsExactlyInAnyOrder(active.getId(), future.getId());
+		assertThat(proxyRepo.findActiveGrantedProxyViews("granted", now)).singleElement().satisfies(view -> {
+			assertThat(view.getId()).isEqualTo(active.getId());
+			assertThat(view.getGrantingUsername()).isEqualTo("granting");
+			assertThat(view.getGrantedUsername()).isEqualTo("granted");
+			assertThat(view.getGrants()).containsExactly(Grant.PROFILE_READ);
+			assertThat(view.getEndDate()).isNull();
+		});
+
+		assertThat(statistics.getEntityLoadCount()).isZero();
+	}
+
+	@Test
+	void whenResolvingOverlapsOfOpenEndedProxyThenLaterProxiesAreDeletedAndEarlierOnesTruncated() {
+		final var endsBefore = persistProxy(daysFromNow(1), daysFromNow(5));
+		final var overlapped = persistProxy(daysFromNow(2), null);
+		final var startsSame = persistProxy(daysFromNow(10), daysFromNow(11));
+		final var startsAfter = persistProxy(daysFromNow(12), null);
+		final var expired = persistProxy(daysFromNow(-5), daysFromNow(-2));
+		final var other = em.persist(new User("other-subject", "other@c4-soft.com", "other"));
+		final var otherPair = persistProxy(other, grantedUser, daysFromNow(2), null);
+		final var provided = persistProxy(startsSame.getStart(), null);
+		resetStatistics();
+
+		proxyRepo.resolveOverlaps(provided, new Date());
+
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2L);
+		assertThat(em.find(Proxy.class, endsBefore.getId()).getEnd()).hasSameTimeAs(endsBefore.getEnd());
+		assertThat(em.find(Proxy.class, overlapped.getId()).getEnd()).hasSameTimeAs(new Date(provided.getStart().getTime() - 1L));
+		assertThat(em.find(Proxy.class, startsSame.getId())).isNull();
+		assertThat(em.find(Proxy.class, startsAfter.getId())).isNull();
+		assertThat(em.find(Proxy.class, expired.getId()).getEnd()).hasSameTimeAs(expired.getEnd());
+		assertThat(em.find(Proxy.class, otherPair.getId()).getEnd()).isNull();
+		assertThat(em.find(Proxy.class, provided.getId()).getEnd()).isNull();
+	}
+
+	@Test
+	void whenResolvingOverlapsOfBoundedProxyThenOverlappedProxiesAreTruncated() {
+		final var endsBefore = persistProxy(daysFromNow(1), daysFromNow(5));
+		final var overlapped = persistProxy(daysFromNow(2), null);
+		final var within = persistProxy(daysFromNow(12), daysFromNow(15));
+		final var startsAfter = persistProxy(daysFromNow(25), null);
+		final var provided = persistProxy(daysFromNow(10), daysFromNow(20));
+		resetStatistics();
+
+		proxyRepo.resolveOverlaps(provided, new Date());
+
+		final var truncatedEnd = new Date(provided.getStart().getTime() - 1L);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1L);
+		assertThat(em.find(Proxy.class, endsBefore.getId()).getEnd()).hasSameTimeAs(endsBefore.getEnd());
+		assertThat(em.find(Proxy.class, overlapped.getId()).getEnd()).hasSameTimeAs(truncatedEnd);
+		assertThat(em.find(Proxy.class, within.getId()).getEnd()).hasSameTimeAs(truncatedEnd);
+		assertThat(em.find(Proxy.class, startsAfter.getId()).getEnd()).isNull();
+		assertThat(em.find(Proxy.class, provided.getId()).getEnd()).hasSameTimeAs(provided.getEnd());
+	}
+
+	long statementsToListProxiesGrantedTo(String grantedUsername, int proxiesCount) {
+		final var granted = em.persist(new User(grantedUsername + "-subject", grantedUsername + "@c4-soft.com", grantedUsername));
+		for (var i = 0; i < proxiesCount; ++i) {
+			final var granting = em.persist(new User("%s-granting-%d-subject".formatted(grantedUsername, i),
+					"%s-granting-%d@c4-soft.com".formatted(grantedUsername, i), "%s-granting-%d".formatted(grantedUsername, i)));
+			persistProxy(granting, granted, daysFromNow(-1), null);
+		}
+		resetStatistics();
+
+		assertThat(proxyRepo.findAll(ProxyRepository.searchSpec(Optional.empty(), Optional.of(grantedUsername), Optional.empty())))
+				.hasSize(proxiesCount)
+				.allSatisfy(proxy -> assertThat(proxy.getGrants()).containsExactly(Grant.PROFILE_READ));
+
+		return statistics.getPrepareStatementCount();
+	}
+
+	Proxy persistProxy(Date start, Date end) {
+		return persistProxy(grantingUser, grantedUser, start, end);
+	}
+
+	Proxy persistProxy(User grantingUser, User grantedUser, Date start, Date end) {
+		return em.persist(Proxy.builder().grantingUser(grantingUser).grantedUser(grantedUser)
+				.grants(EnumSet.of(Grant.PROFILE_READ)).start(start).end(end).build());
+	}
+
+	void resetStatistics() {
+		em.flush();
+		em.clear();
+		statistics.clear();
+	}
+
+	static Date daysFromNow(long days) {
+		return Date.from(Instant.now().plus(days, ChronoUnit.DAYS));
+	}
+}
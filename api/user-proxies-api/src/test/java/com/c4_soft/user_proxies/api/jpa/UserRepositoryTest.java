@@ -0,0 +1,94 @@
+package com.c4_soft.user_proxies.api.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.orm.jpa.HibernateMetricsAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.c4_soft.user_proxies.api.domain.User;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Second-level cache is populated on commit: tests run outside of the usual rolled-back test transaction
+ */
+@DataJpaTest
+@Import(CacheMetricsConfig.class)
+@ImportAutoConfiguration({
+		MetricsAutoConfiguration.class,
+		SimpleMetricsExportAutoConfiguration.class,
+		CompositeMeterRegistryAutoConfiguration.class,
+		HibernateMetricsAutoConfiguration.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserRepositoryTest {
+	@Autowired
+	UserRepository userRepo;
+
+	@Autowired
+	EntityManagerFactory emf;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		statistics = emf.unwrap(SessionFactory.class).getStatistics();
+		userRepo.save(new User("ch4mpy-subject", "ch4mp@c4-soft.com", "ch4mpy"));
+	}
+
+	@AfterEach
+	void tearDown() {
+		userRepo.deleteAllInBatch();
+	}
+
+	@Test
+	void whenUserIsLookedUpTwiceByPreferredUsernameThenSecondLookupDoesNotHitDatabase() {
+		assertThat(userRepo.findByPreferredUsername("ch4mpy")).isPresent();
+		statistics.clear();
+
+		assertThat(userRepo.findByPreferredUsername("ch4mpy")).map(User::getEmail).contains("ch4mp@c4-soft.com");
+
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(statistics.getNaturalIdCacheHitCount()).isPositive();
+	}
+
+	@Test
+	void whenNaturalIdIsServedFromCacheThenHitIsCountedInMeterRegistry() {
+		assertThat(userRepo.findByPreferredUsername("ch4mpy")).isPresent();
+		final var hitsBefore = naturalIdCacheHits();
+
+		assertThat(userRepo.findByPreferredUsername("ch4mpy")).isPresent();
+
+		assertThat(naturalIdCacheHits()).isGreaterThan(hitsBefore);
+	}
+
+	@Test
+	void whenPreferredUsernameIsUpdatedThenCachedNaturalIdIsUpdated() {
+		final var user = userRepo.findByPreferredUsername("ch4mpy").orElseThrow();
+		user.setPreferredUsername("ch4mp");
+		userRepo.save(user);
+
+		assertThat(userRepo.findByPreferredUsername("ch4mpy")).isEmpty();
+		assertThat(userRepo.findByPreferredUsername("ch4mp")).map(User::getId).contains(user.getId());
+	}
+
+	private double naturalIdCacheHits() {
+		return meterRegistry.get("hibernate.cache.natural.id.requests").tag("result", "hit").functionCounter().count();
+	}
+}
@@ -0,0 +1,94 @@
+package com.c4_soft.user_proxies.api.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import com.c4_soft.user_proxies.api.jpa.UserRepository;
+import com.c4_soft.user_proxies.api.web.dto.UserDto;
+
+class UserSearchIndexTest {
+	static final int LARGE_USER_COUNT = 200_000;
+
+	UserRepository userRepo;
+
+	UserSearchIndex index;
+
+	@BeforeEach
+	void setUp() {
+		userRepo = mock(UserRepository.class);
+		index = new UserSearchIndex(userRepo);
+		index.load();
+		index.add("tonton-pirate", "jwacongne@c4-soft.com");
+		index.add("ch4mpy", "jwacongne@gmail.com");
+		index.add("Pirate", "captain@c4-soft.com");
+		index.add("admin", "ch4mp@c4-soft.com");
+	}
+
+	@Test
+	void whenPrefixMatchesThenItIsReturnedBeforeContainedMatches() {
+		assertThat(index.search("PIR", 10)).containsExactly("Pirate", "tonton-pirate");
+	}
+
+	@Test
+	void whenEmailContainsNeedleThenUsernameIsReturned() {
+		assertThat(index.search("c4-soft", 10)).containsExactly("admin", "Pirate", "tonton-pirate");
+		assertThat(index.search("gmail", 10)).containsExactly("ch4mpy");
+	}
+
+	@Test
+	void whenMoreMatchesThanLimitThenResultIsTruncated() {
+		assertThat(index.search("c4-soft", 2)).containsExactly("admin", "Pirate");
+	}
+
+	@Test
+	void whenNoTrigramMatchesThenEmpty() {
+		assertThat(index.search("xyz", 10)).isEmpty();
+	}
+
+	@Test
+	void whenUserAddedTwiceThenItIsReturnedOnce() {
+		index.add("ch4mpy", "jwacongne@gmail.com");
+		assertThat(index.search("ch4", 10)).containsExactly("ch4mpy", "admin");
+	}
+
+	@Test
+	void whenManyUsersShareTrigramsThenLoadIsFastAndMergesConcurrentAdds() {
+		final var users = IntStream.range(0, LARGE_USER_COUNT)
+				.mapToObj(i -> new UserDto((long) i, "subject-" + i, "user-%06d@gmail.com".formatted(i), "user-%06d".formatted(i)))
+				.toList();
+		when(userRepo.findPageByEmailOrPreferredUsernameLike(eq("%"), anyString(), any(Pageable.class))).thenAnswer(invocation -> {
+			final String cursor = invocation.getArgument(1);
+			final Pageable page = invocation.getArgument(2);
+			return users.stream().filter(u -> u.getPreferredUsername().compareTo(cursor) > 0).limit(page.getPageSize()).toList();
+		});
+		final var loaded = new UserSearchIndex(userRepo);
+		// added before load completes, as done by user creation while the application starts
+		loaded.add("zorro", "zorro@gmail.com");
+
+		assertTimeoutPreemptively(Duration.ofSeconds(20), loaded::load);
+
+		assertThat(loaded.search("gmail", 3)).containsExactly("user-000000", "user-000001", "user-000002");
+		assertThat(loaded.search("123456", 10)).containsExactly("user-123456");
+		assertThat(loaded.search("zorro", 10)).containsExactly("zorro");
+	}
+
+	@Test
+	void whenNotLoadedThenDatabaseIsSearched() {
+		when(userRepo.findPreferredUsernamePageByEmailOrPreferredUsernameLike(eq("%gmail%"), eq(""), any(Pageable.class))).thenReturn(List.of("ch4mpy"));
+
+		assertThat(new UserSearchIndex(userRepo).search("Gmail", 10)).containsExactly("ch4mpy");
+	}
+}
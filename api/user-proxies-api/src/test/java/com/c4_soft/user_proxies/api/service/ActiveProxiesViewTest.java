@@ -0,0 +1,101 @@
+package com.c4_soft.user_proxies.api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.c4_soft.user_proxies.api.domain.User;
+import com.c4_soft.user_proxies.api.jpa.ProxyChangeOffsetRepository;
+import com.c4_soft.user_proxies.api.jpa.ProxyChangeRepository;
+import com.c4_soft.user_proxies.api.jpa.ProxyRepository;
+import com.c4_soft.user_proxies.api.jpa.UserRepository;
+import com.c4_soft.user_proxies.api.web.UserProxyMapperImpl;
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+import com.c4_soft.user_proxies.api.web.dto.ProxyEditDto;
+
+/**
+ * Invalidation happens after commit: tests run outside of the usual rolled-back test transaction
+ */
+@DataJpaTest
+@Import({ ProxyService.class, ProxyChangeLog.class, ActiveProxiesView.class, UserProxyMapperImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ActiveProxiesViewTest {
+
+	@Autowired
+	ProxyService proxyService;
+
+	@Autowired
+	ActiveProxiesView activeProxiesView;
+
+	@Autowired
+	UserRepository userRepo;
+
+	@Autowired
+	ProxyRepository proxyRepo;
+
+	@BeforeEach
+	void setUp() {
+		userRepo.saveAll(List.of(
+				new User("granting-subject", "granting@c4-soft.com", "granting"),
+				new User("granted-subject", "granted@c4-soft.com", "granted")));
+	}
+
+	@Autowired
+	ProxyChangeRepository changeRepo;
+
+	@Autowired
+	ProxyChangeOffsetRepository offsetRepo;
+
+	@AfterEach
+	void tearDown() {
+		changeRepo.deleteAllInBatch();
+		offsetRepo.deleteAllInBatch();
+		proxyRepo.deleteAllInBatch();
+		userRepo.deleteAllInBatch();
+	}
+
+	@Test
+	void whenProxiesAreModifiedThenViewIsUpToDateOnceCommitted() {
+		assertThat(activeProxiesView.get("granted").grantMasks()).isEmpty();
+
+		final var now = Instant.now();
+		final var end = now.plus(1, ChronoUnit.HOURS).toEpochMilli();
+		final var id = proxyService.create("granting", "granted", new ProxyEditDto(List.of(Grant.GREET), now.minus(1, ChronoUnit.HOURS).toEpochMilli(), end));
+
+		final var created = activeProxiesView.get("granted");
+		assertThat(created.grantMasks()).containsEntry("granting", Grant.toMask(List.of(Grant.GREET, Grant.PROFILE_READ)));
+		// modifications from other instances are picked up within the TTL, even if the next boundary is later
+		assertThat(created.validUntil()).isLessThan(end).isLessThanOrEqualTo(Instant.now().toEpochMilli() + ActiveProxiesView.TTL_MILLIS);
+		assertThat(activeProxiesView.get("granted")).isSameAs(created);
+
+		proxyService.delete(id, "granting", "granted");
+
+		assertThat(activeProxiesView.get("granted").grantMasks()).isEmpty();
+	}
+
+	@Test
+	void whenProxyStartIsReachedThenViewIsReloaded() throws Exception {
+		final var start = Instant.now().plus(200, ChronoUnit.MILLIS);
+		proxyService.create("granting", "granted", new ProxyEditDto(List.of(Grant.GREET), start.toEpochMilli(), null));
+
+		final var before = activeProxiesView.get("granted");
+		assertThat(before.grantMasks()).isEmpty();
+		assertThat(before.validUntil()).isEqualTo(start.toEpochMilli());
+
+		Thread.sleep(300);
+
+		assertThat(activeProxiesView.get("granted").grantMasks()).containsKey("granting");
+		assertThat(activeProxiesView.get("granted").validUntil()).isLessThanOrEqualTo(Instant.now().toEpochMilli() + ActiveProxiesView.TTL_MILLIS);
+	}
+}
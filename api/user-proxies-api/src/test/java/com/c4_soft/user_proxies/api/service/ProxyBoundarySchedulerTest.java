@@ -0,0 +1,84 @@
+package com.c4_soft.user_proxies.api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import com.c4_soft.user_proxies.api.jpa.ProxyRepository;
+import com.c4_soft.user_proxies.api.jpa.ProxyView;
+
+class ProxyBoundarySchedulerTest {
+	ProxyRepository proxyRepo;
+
+	ThreadPoolTaskScheduler taskScheduler;
+
+	List<Object> published;
+
+	ProxyBoundaryScheduler scheduler;
+
+	@BeforeEach
+	void setUp() {
+		proxyRepo = mock(ProxyRepository.class);
+		taskScheduler = new ThreadPoolTaskScheduler();
+		taskScheduler.initialize();
+		published = new CopyOnWriteArrayList<>();
+		scheduler = new ProxyBoundaryScheduler(proxyRepo, taskScheduler, published::add);
+	}
+
+	@AfterEach
+	void tearDown() {
+		taskScheduler.shutdown();
+	}
+
+	@Test
+	void whenBoundariesAreReachedThenEventsArePublishedInOrderAndOnce() throws Exception {
+		final var now = new Date().getTime();
+		final var proxies = List.of(proxyView(1L, now + 100L, now + 300L), proxyView(2L, now - 1000L, now + 200L));
+		when(proxyRepo.findViewsWithBoundaryBetween(any(), any())).thenReturn(proxies);
+
+		scheduler.reload(now);
+		assertThat(scheduler.size()).isEqualTo(3);
+
+		Thread.sleep(250L);
+		// reloading must not publish again the boundaries already reached
+		scheduler.reload(new Date().getTime());
+
+		Thread.sleep(200L);
+		assertThat(published).containsExactly(
+				new ProxyActivatedEvent(1L, "granting", "granted", now + 100L),
+				new ProxyExpiredEvent(2L, "granting", "granted", now + 200L),
+				new ProxyExpiredEvent(1L, "granting", "granted", now + 300L));
+		assertThat(scheduler.size()).isZero();
+	}
+
+	@Test
+	void whenBoundaryIsOutOfHorizonThenItIsIgnored() {
+		final var now = new Date().getTime();
+		when(proxyRepo.findViewsWithBoundaryBetween(any(), any()))
+				.thenReturn(List.of(proxyView(1L, now - 1000L, now + ProxyBoundaryScheduler.HORIZON_MILLIS + 1L)));
+
+		scheduler.reload(now);
+
+		assertThat(scheduler.size()).isZero();
+	}
+
+	static ProxyView proxyView(Long id, long start, Long end) {
+		final var view = mock(ProxyView.class);
+		when(view.getId()).thenReturn(id);
+		when(view.getGrantingUsername()).thenReturn("granting");
+		when(view.getGrantedUsername()).thenReturn("granted");
+		when(view.getStartDate()).thenReturn(new Date(start));
+		when(view.getEndDate()).thenReturn(end == null ? null : new Date(end));
+		return view;
+	}
+}
@@ -0,0 +1,155 @@
+package com.c4_soft.user_proxies.api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.c4_soft.user_proxies.api.domain.ProxyChange;
+import com.c4_soft.user_proxies.api.domain.User;
+import com.c4_soft.user_proxies.api.jpa.ProxyChangeOffsetRepository;
+import com.c4_soft.user_proxies.api.jpa.ProxyChangeRepository;
+import com.c4_soft.user_proxies.api.jpa.ProxyRepository;
+import com.c4_soft.user_proxies.api.jpa.ProxyView;
+import com.c4_soft.user_proxies.api.jpa.UserRepository;
+import com.c4_soft.user_proxies.api.web.UserProxyMapperImpl;
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+import com.c4_soft.user_proxies.api.web.dto.ProxyEditDto;
+
+/**
+ * Each service call must commit on its own: tests run outside of the usual rolled-back test transaction
+ */
+@DataJpaTest
+@Import({ ProxyService.class, ProxyChangeLog.class, UserProxyMapperImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProxyServiceConcurrencyTest {
+	static final int THREADS = 8;
+	static final int PROXIES_PER_THREAD = 25;
+
+	@Autowired
+	ProxyService proxyService;
+
+	@Autowired
+	UserRepository userRepo;
+
+	@Autowired
+	ProxyRepository proxyRepo;
+
+	@BeforeEach
+	void setUp() {
+		userRepo.saveAll(List.of(
+				new User("granting-subject", "granting@c4-soft.com", "granting"),
+				new User("granted-subject", "granted@c4-soft.com", "granted")));
+	}
+
+	@Autowired
+	ProxyChangeRepository changeRepo;
+
+	@Autowired
+	ProxyChangeOffsetRepository offsetRepo;
+
+	@AfterEach
+	void tearDown() {
+		changeRepo.deleteAllInBatch();
+		offsetRepo.deleteAllInBatch();
+		proxyRepo.deleteAllInBatch();
+		userRepo.deleteAllInBatch();
+	}
+
+	@Test
+	void whenCreatingProxiesConcurrentlyForSamePairThenNoOverlapSurvives() throws Exception {
+		final var now = Instant.now();
+		final var startGate = new CountDownLatch(1);
+		final var executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final var futures = new ArrayList<Future<Void>>();
+			for (var t = 0; t < THREADS; ++t) {
+				final var random = new Random(t);
+				futures.add(executor.submit(() -> {
+					startGate.await();
+					for (var i = 0; i < PROXIES_PER_THREAD; ++i) {
+						final var start = now.plus(1 + random.nextInt(1000), ChronoUnit.HOURS);
+						final var end = random.nextBoolean() ? null : start.plus(1 + random.nextInt(100), ChronoUnit.HOURS).toEpochMilli();
+						proxyService.create("granting", "granted", new ProxyEditDto(List.of(Grant.PROFILE_READ), start.toEpochMilli(), end));
+					}
+					return null;
+				}));
+			}
+			startGate.countDown();
+			for (final var future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// proxies truncated to end before they start are void (and harmless)
+		final var proxies = proxyRepo.findGrantedProxyViews("granted", new Date()).stream()
+				.filter(p -> p.getEndDate() == null || !p.getEndDate().before(p.getStartDate()))
+				.sorted(Comparator.comparing(ProxyView::getStartDate))
+				.toList();
+		assertThat(proxies).isNotEmpty();
+		for (var i = 1; i < proxies.size(); ++i) {
+			final var previous = proxies.get(i - 1);
+			assertThat(previous.getEndDate()).as("proxy %d overlaps proxy %d", previous.getId(), proxies.get(i).getId()).isNotNull()
+					.isBefore(proxies.get(i).getStartDate());
+		}
+
+		// offsets are assigned without gaps
+		final var offsets = changeRepo.findAll().stream().map(ProxyChange::getId).sorted().toList();
+		assertThat(offsets).hasSizeGreaterThanOrEqualTo(THREADS * PROXIES_PER_THREAD);
+		assertThat(offsets.get(offsets.size() - 1)).isEqualTo(offsets.size());
+	}
+
+	@Test
+	void whenFirstChangesAreAppendedConcurrentlyForDistinctPairsThenOffsetsRowIsCreatedOnce() throws Exception {
+		final var users = new ArrayList<User>();
+		for (var t = 0; t < THREADS; ++t) {
+			users.add(new User("granting-subject-" + t, "granting-%d@c4-soft.com".formatted(t), "granting-" + t));
+			users.add(new User("granted-subject-" + t, "granted-%d@c4-soft.com".formatted(t), "granted-" + t));
+		}
+		userRepo.saveAll(users);
+
+		final var now = Instant.now();
+		final var startGate = new CountDownLatch(1);
+		final var executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final var futures = new ArrayList<Future<Long>>();
+			for (var t = 0; t < THREADS; ++t) {
+				final var index = t;
+				futures.add(executor.submit(() -> {
+					startGate.await();
+					return proxyService.create("granting-" + index, "granted-" + index, new ProxyEditDto(List.of(Grant.PROFILE_READ), now.toEpochMilli(), null));
+				}));
+			}
+			startGate.countDown();
+			for (final var future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(offsetRepo.count()).isEqualTo(1L);
+		assertThat(changeRepo.findAll().stream().map(ProxyChange::getId).sorted().toList()).isEqualTo(LongStream.rangeClosed(1L, THREADS).boxed().toList());
+	}
+}
@@ -0,0 +1,121 @@
+package com.c4_soft.user_proxies.api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.c4_soft.user_proxies.api.domain.Proxy;
+import com.c4_soft.user_proxies.api.domain.ProxyChange;
+import com.c4_soft.user_proxies.api.domain.ProxyChangeOffset;
+import com.c4_soft.user_proxies.api.domain.User;
+import com.c4_soft.user_proxies.api.web.UserProxyMapperImpl;
+import com.c4_soft.user_proxies.api.web.dto.Grant;
+import com.c4_soft.user_proxies.api.web.dto.ProxyChangeType;
+import com.c4_soft.user_proxies.api.web.dto.ProxyEditDto;
+import com.c4_soft.user_proxies.api.web.dto.ProxyImportDto;
+
+@DataJpaTest
+@Import({ ProxyService.class, ProxyChangeLog.class, UserProxyMapperImpl.class })
+class ProxyServiceTest {
+	static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+	@Autowired
+	TestEntityManager em;
+
+	@Autowired
+	ProxyService proxyService;
+
+	User grantingUser;
+
+	User grantedUser;
+
+	@BeforeEach
+	void setUp() {
+		grantingUser = em.persist(new User("granting-subject", "granting@c4-soft.com", "granting"));
+		grantedUser = em.persist(new User("granted-subject", "granted@c4-soft.com", "granted"));
+	}
+
+	@Test
+	void whenImportingProxiesThenOverlapsAreResolvedInImportOrder() {
+		final var existing = persistProxy(daysFromNow(2), null);
+		final var other = em.persist(new User("other-subject", "other@c4-soft.com", "other"));
+		em.flush();
+		em.clear();
+
+		final var report = proxyService.importProxies(List.of(
+				importDto("granting", "granted", daysFromNow(10), null),
+				importDto("granting", "unknown", daysFromNow(10), null),
+				importDto("granting", "granted", daysFromNow(12), daysFromNow(15)),
+				importDto("other", "granted", daysFromNow(1), null)).iterator());
+
+		assertThat(report.getImported()).isEqualTo(3);
+		assertThat(report.getTruncated()).isEqualTo(1);
+		assertThat(report.getDeleted()).isZero();
+		assertThat(report.getErrors()).containsExactly("#1: no user with preferredUsername unknown");
+
+		assertThat(em.find(Proxy.class, existing.getId()).getEnd()).hasSameTimeAs(new Date(daysFromNow(10).getTime() - 1L));
+		final var imported = em.getEntityManager().createQuery("SELECT p FROM Proxy p WHERE p.id <> :id ORDER BY p.start", Proxy.class)
+				.setParameter("id", existing.getId()).getResultList();
+		assertThat(imported).extracting(p -> p.getGrantingUser().getId()).containsExactly(other.getId(), grantingUser.getId(), grantingUser.getId());
+		assertThat(imported.get(1).getEnd()).hasSameTimeAs(new Date(daysFromNow(12).getTime() - 1L));
+		assertThat(imported.get(2).getEnd()).hasSameTimeAs(daysFromNow(15));
+		assertThat(imported).allSatisfy(p -> assertThat(p.getGrants()).contains(Grant.PROFILE_READ));
+	}
+
+	@Test
+	void whenImportedProxyHasNoEndThenLaterProxiesAreDeleted() {
+		final var existing = persistProxy(daysFromNow(8), null);
+		em.flush();
+		em.clear();
+
+		final var report = proxyService.importProxies(List.of(importDto("granting", "granted", daysFromNow(5), null)).iterator());
+
+		assertThat(report.getImported()).isEqualTo(1);
+		assertThat(report.getDeleted()).isEqualTo(1);
+		assertThat(em.find(Proxy.class, existing.getId())).isNull();
+	}
+
+	@Test
+	void whenCreatingProxyThenOverlapsAreRecordedInChangeLogWithConsecutiveOffsets() {
+		final var truncated = persistProxy(daysFromNow(2), null);
+		final var deleted = persistProxy(daysFromNow(8), daysFromNow(9));
+		em.flush();
+		em.clear();
+
+		final var id = proxyService.create("granting", "granted", new ProxyEditDto(List.of(Grant.GREET), daysFromNow(5).getTime(), null));
+
+		final var changes = em.getEntityManager().createQuery("SELECT c FROM ProxyChange c ORDER BY c.id", ProxyChange.class).getResultList();
+		assertThat(changes).extracting(ProxyChange::getId).containsExactly(1L, 2L, 3L);
+		assertThat(changes).extracting(ProxyChange::getType, ProxyChange::getProxyId).containsExactlyInAnyOrder(
+				tuple(ProxyChangeType.CREATED, id),
+				tuple(ProxyChangeType.UPDATED, truncated.getId()),
+				tuple(ProxyChangeType.DELETED, deleted.getId()));
+		assertThat(changes).allSatisfy(c -> assertThat(c.getGrantedUsername()).isEqualTo("granted"));
+		assertThat(em.find(ProxyChangeOffset.class, ProxyChangeOffset.ID).getLastOffset()).isEqualTo(3L);
+	}
+
+	Proxy persistProxy(Date start, Date end) {
+		return em.persist(Proxy.builder().grantingUser(grantingUser).grantedUser(grantedUser)
+				.grants(EnumSet.of(Grant.PROFILE_READ)).start(start).end(end).build());
+	}
+
+	static ProxyImportDto importDto(String grantingUsername, String grantedUsername, Date start, Date end) {
+		return new ProxyImportDto(grantingUsername, grantedUsername, List.of(Grant.GREET), start.getTime(), end == null ? null : end.getTime());
+	}
+
+	static Date daysFromNow(long days) {
+		return Date.from(NOW.plus(days, ChronoUnit.DAYS));
+	}
+}
@@ -0,0 +1,74 @@
+package com.c4_soft.user_proxies.api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.c4_soft.user_proxies.api.domain.User;
+import com.c4_soft.user_proxies.api.jpa.UserRepository;
+import com.c4_soft.user_proxies.api.search.UserSearchIndex;
+import com.c4_soft.user_proxies.api.web.UserMapperImpl;
+import com.c4_soft.user_proxies.api.web.dto.UserCreateDto;
+
+@DataJpaTest
+@Import({ UserService.class, UserMapperImpl.class, UserSearchIndex.class })
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+class UserServiceTest {
+	@Autowired
+	TestEntityManager em;
+
+	@Autowired
+	UserService userService;
+
+	@Autowired
+	UserRepository userRepo;
+
+	@Autowired
+	UserSearchIndex userSearchIndex;
+
+	@Test
+	void whenSomeUsersConflictOrAreInvalidThenOthersAreStillCreated() {
+		em.persist(new User("admin-subject", "admin@c4-soft.com", "admin"));
+		em.flush();
+
+		final var report = userService.createAll(List.of(
+				new UserCreateDto("machin-subject", "machin@c4-soft.com", "machin"),
+				new UserCreateDto("other-subject", "other@c4-soft.com", "admin"),
+				new UserCreateDto("invalid-subject", "not an e-mail", "invalid"),
+				new UserCreateDto("truc-subject", "machin@c4-soft.com", "truc"),
+				new UserCreateDto("bidule-subject", "bidule@c4-soft.com", "bidule")).iterator());
+
+		assertThat(report.getCreated()).isEqualTo(2);
+		assertThat(report.getErrors()).hasSize(3);
+		assertThat(report.getErrors().get(0)).isEqualTo("#1: UK_USER_USERNAME");
+		assertThat(report.getErrors().get(1)).startsWith("#2: email ");
+		assertThat(report.getErrors().get(2)).isEqualTo("#3: UK_USER_EMAIL");
+
+		assertThat(userRepo.findByPreferredUsername("machin")).isPresent();
+		assertThat(userRepo.findByPreferredUsername("bidule")).isPresent();
+		assertThat(userRepo.findByPreferredUsername("truc")).isEmpty();
+		assertThat(userSearchIndex.search("bidule", 10)).containsExactly("bidule");
+	}
+
+	@Test
+	void whenAnItemIsRejectedThenItsOtherKeysAreNotClaimed() {
+		em.persist(new User("admin-subject", "admin@c4-soft.com", "admin"));
+		em.flush();
+
+		final var report = userService.createAll(List.of(
+				new UserCreateDto("other-subject", "x@c4-soft.com", "admin"),
+				new UserCreateDto("x-subject", "x@c4-soft.com", "x")).iterator());
+
+		assertThat(report.getCreated()).isEqualTo(1);
+		assertThat(report.getErrors()).containsExactly("#0: UK_USER_USERNAME");
+		assertThat(userRepo.findByPreferredUsername("x")).isPresent();
+	}
+}
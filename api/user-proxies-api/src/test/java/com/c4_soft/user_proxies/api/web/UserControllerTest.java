@@ -1,7 +1,19 @@
 package com.c4_soft.user_proxies.api.web;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 
@@ -11,7 +23,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AuthenticationManagerResolver;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.c4_soft.springaddons.security.oauth2.test.annotations.OpenIdClaims;
 import com.c4_soft.springaddons.security.oauth2.test.mockmvc.MockMvcSupport;
@@ -21,10 +37,17 @@ import com.c4_soft.user_proxies.api.UserFixtures;
 import com.c4_soft.user_proxies.api.domain.User;
 import com.c4_soft.user_proxies.api.jpa.ProxyRepository;
 import com.c4_soft.user_proxies.api.jpa.UserRepository;
+import com.c4_soft.user_proxies.api.search.UserSearchIndex;
+import com.c4_soft.user_proxies.api.service.ActiveProxiesView;
+import com.c4_soft.user_proxies.api.service.ActiveProxiesView.ActiveProxies;
+import com.c4_soft.user_proxies.api.service.ProxyChangeFeed;
+import com.c4_soft.user_proxies.api.service.ProxyService;
+import com.c4_soft.user_proxies.api.service.UserService;
 import com.c4_soft.user_proxies.api.security.ProxiesId;
 import com.c4_soft.user_proxies.api.security.ProxiesId.Proxy;
 import com.c4_soft.user_proxies.api.security.WithSecurity;
 import com.c4_soft.user_proxies.api.web.dto.Grant;
+import com.c4_soft.user_proxies.api.web.dto.UserDto;
 
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -43,6 +66,21 @@ class UserControllerTests {
 
 	@MockBean
 	ProxyRepository proxyRepository;
+
+	@MockBean
+	UserSearchIndex userSearchIndex;
+
+	@MockBean
+	ProxyService proxyService;
+
+	@MockBean
+	UserService userService;
+
+	@MockBean
+	ActiveProxiesView activeProxiesView;
+
+	@MockBean
+	ProxyChangeFeed proxyChangeFeed;
 	@Autowired
 	UserProxyMapper userProxyMapper;
 
@@ -104,6 +142,87 @@ class UserControllerTests {
 		mockMvc.get("/users/{grantingUsername}/proxies/granted", "machin").andExpect(status().isForbidden());
 	}
 
+	// @formatter:off
+	// Test UserController::retrieveProxiesClaim which is secured with:
+	/** is(#username) or hasAnyAuthority('TOKEN_ISSUER', 'USERS_ADMIN') or onBehalfOf(#username).can('PROXIES_READ') */
+	// @formatter:on
+	@Test
+	@ProxiesId()
+	void whenAuthenticatedWithoutRequiredAuthoritiesNorProxiesThenForbiddenToProxiesClaim() throws Exception {
+		mockMvc.get("/users/{username}/proxies/granted/claim", "ch4mpy").andExpect(status().isForbidden());
+	}
+
+	@Test
+	@ProxiesId(authorities = "TOKEN_ISSUER")
+	void whenAuthenticatedAsAuthorizationServerThenCanGetProxiesClaim() throws Exception {
+		when(activeProxiesView.get("ch4mpy")).thenReturn(new ActiveProxies(
+				Map.of("tonton-pirate", Grant.toMask(EnumSet.of(Grant.PROFILE_READ, Grant.GREET)), "admin", Grant.PROFILE_READ.mask()),
+				Instant.now().plus(1, ChronoUnit.HOURS).toEpochMilli()));
+
+		mockMvc
+				.get("/users/{username}/proxies/granted/claim", "ch4mpy")
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$['tonton-pirate']", contains("GREET", "PROFILE_READ")))
+				.andExpect(jsonPath("$.admin", contains("PROFILE_READ")))
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, startsWith("max-age=35")));
+	}
+
+	// @formatter:off
+	// Test UserController::streamProxyChanges which is secured with:
+	/** hasAnyAuthority('TOKEN_ISSUER', 'USERS_ADMIN') */
+	// @formatter:on
+	@Test
+	@ProxiesId(authorities = {}, claims = @OpenIdClaims(preferredUsername = "ch4mpy"))
+	void whenAuthenticatedWithoutRequiredAuthoritiesThenForbiddenToProxyChanges() throws Exception {
+		mockMvc.get("/users/proxies/changes").andExpect(status().isForbidden());
+	}
+
+	@Test
+	@ProxiesId(authorities = "TOKEN_ISSUER")
+	void whenAuthenticatedAsAuthorizationServerThenCanSubscribeToProxyChanges() throws Exception {
+		when(proxyChangeFeed.subscribe(42L)).thenReturn(new SseEmitter());
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/users/proxies/changes?after=42").accept(MediaType.TEXT_EVENT_STREAM)).andExpect(status().isOk());
+
+		verify(proxyChangeFeed).subscribe(42L);
+	}
+
+	// @formatter:off
+	// Test UserController::retrievePageByEmailOrPreferredUsernamePart which is secured with:
+	/** hasAuthority('USERS_ADMIN') */
+	// @formatter:on
+	@Test
+	@ProxiesId(authorities = "USERS_ADMIN")
+	void whenMoreUsersThanPageSizeThenNextCursorIsLastUsernameOfPage() throws Exception {
+		when(userRepository.findPageByEmailOrPreferredUsernameLike(eq("%c4-soft%"), eq("admin"), any())).thenReturn(List.of(
+				new UserDto(3L, "user-b", "jwacongne@gmail.com", "ch4mpy"),
+				new UserDto(2L, "user-a", "jwacongne@c4-soft.com", "tonton-pirate"),
+				new UserDto(4L, "user-c", "truc@c4-soft.com", "truc")));
+
+		mockMvc
+				.get("/users/page?emailOrPreferredUsernamePart=C4-soft&cursor=admin&size=2")
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items[*].preferredUsername", contains("ch4mpy", "tonton-pirate")))
+				.andExpect(jsonPath("$.nextCursor").value("tonton-pirate"));
+	}
+
+	@Test
+	@ProxiesId(authorities = "USERS_ADMIN")
+	void whenPageSizeExceedsMaxThenBadRequest() throws Exception {
+		mockMvc.get("/users/page?emailOrPreferredUsernamePart=c4-soft&size=101").andExpect(status().isBadRequest());
+	}
+
+	@Test
+	@ProxiesId()
+	void whenUsernamesLikeThenAutocompleteIndexIsQueriedWithLimit() throws Exception {
+		when(userSearchIndex.search("pir", 5)).thenReturn(List.of("pirate", "tonton-pirate"));
+
+		mockMvc
+				.get("/users/usernames?preferredUsernamePart=pir&limit=5")
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", contains("pirate", "tonton-pirate")));
+	}
+
 	// @formatter:off
 	// Test access to UserController::retrieveGrantingProxies which is secured with:
 	/** is(#username) or hasAnyAuthority('USERS_ADMIN') or onBehalfOf(#username).can('READ_PROXIES') */